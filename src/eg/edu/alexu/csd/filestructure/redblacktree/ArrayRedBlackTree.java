@@ -0,0 +1,455 @@
+package eg.edu.alexu.csd.filestructure.redblacktree;
+
+import javax.management.RuntimeErrorException;
+import java.util.Arrays;
+
+/**
+ * red black tree keeping its nodes in parallel arrays instead of one object per node.
+ * A node is an int index into the arrays; index 0 is the nil leaf, colors are packed one bit per node
+ * and deleted slots are chained into a free list through the right child array.
+ * Kept package-private so {@link RedBlackTree} stays the only public implementation of the interface,
+ * use {@link RedBlackTrees#arrayBacked()} to create one.
+ */
+class ArrayRedBlackTree<T extends Comparable<T>, V> implements IRedBlackTree<T, V> {
+    private static final int NIL = 0;
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private int[] left;
+    private int[] right;
+    private int[] parent;
+    private long[] red;
+    private Object[] keys;
+    private Object[] values;
+
+    private int root = NIL;
+    private int size = 0;
+    //first slot never handed out yet, and head of the chain of freed slots
+    private int next = 1;
+    private int freeHead = NIL;
+    private final int initialCapacity;
+
+    ArrayRedBlackTree() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    ArrayRedBlackTree(int initialCapacity) {
+        if (initialCapacity < 1)
+            throw new RuntimeErrorException(new Error());
+        this.initialCapacity = initialCapacity;
+        allocate(initialCapacity + 1);
+    }
+
+    private void allocate(int capacity) {
+        left = new int[capacity];
+        right = new int[capacity];
+        parent = new int[capacity];
+        red = new long[(capacity + 63) >>> 6];
+        keys = new Object[capacity];
+        values = new Object[capacity];
+    }
+
+    @Override
+    public INode<T, V> getRoot() {
+        return new NodeView(root);
+    }
+
+    @Override
+    public boolean isEmpty() { return root == NIL; }
+
+    @Override
+    public void clear() {
+        root = NIL;
+        size = 0;
+        next = 1;
+        freeHead = NIL;
+        allocate(initialCapacity + 1);
+    }
+
+    @Override
+    public V search(T key) {
+        if (key == null)
+            throw new RuntimeErrorException(new Error());
+        int node = searchHelper(key);
+        return node == NIL ? null : value(node);
+    }
+
+    @Override
+    public boolean contains(T key) {
+        if (key == null)
+            throw new RuntimeErrorException(new Error());
+        return searchHelper(key) != NIL;
+    }
+
+    @Override
+    public void insert(T key, V value) {
+        if (key == null || value == null)
+            throw new RuntimeErrorException(new Error());
+        int x = root, y = NIL, cmp = 0;
+        //get the parent of the inserted node
+        while (x != NIL) {
+            y = x;
+            cmp = key.compareTo(key(x));
+            if (cmp < 0) {
+                x = left[x];
+            } else if (cmp > 0) {
+                x = right[x];
+            } else {
+                //change the value of the node if the key already exists
+                values[x] = value;
+                return;
+            }
+        }
+        int node = newNode(key, value);
+        size++;
+        parent[node] = y;
+        if (y == NIL) { //empty tree
+            root = node;
+            setRed(node, false);
+            return;
+        }
+        if (cmp < 0)
+            left[y] = node;
+        else
+            right[y] = node;
+        fixInsert(node);
+    }
+
+    @Override
+    public boolean delete(T key) {
+        if (key == null)
+            throw new RuntimeErrorException(new Error());
+        int z = searchHelper(key);
+        if (z == NIL)
+            return false;
+        deleteNode(z);
+        return true;
+    }
+
+    /**
+     * @return the size of the tree.
+     */
+    public int getSize() { return size; }
+
+    @SuppressWarnings("unchecked")
+    private T key(int node) { return (T) keys[node]; }
+
+    @SuppressWarnings("unchecked")
+    private V value(int node) { return (V) values[node]; }
+
+    private boolean isRed(int node) { return (red[node >>> 6] & (1L << node)) != 0; }
+
+    private void setRed(int node, boolean isRed) {
+        if (isRed)
+            red[node >>> 6] |= 1L << node;
+        else
+            red[node >>> 6] &= ~(1L << node);
+    }
+
+    /**
+     * take a slot from the free list, or the next unused one, growing the arrays when full.
+     * @return index of a new red node with nil children.
+     */
+    private int newNode(T key, V value) {
+        int node;
+        if (freeHead != NIL) {
+            node = freeHead;
+            freeHead = right[node];
+        } else {
+            if (next == keys.length)
+                grow();
+            node = next++;
+        }
+        keys[node] = key;
+        values[node] = value;
+        left[node] = NIL;
+        right[node] = NIL;
+        setRed(node, true);
+        return node;
+    }
+
+    private void grow() {
+        int capacity = keys.length + (keys.length >> 1) + 1;
+        left = Arrays.copyOf(left, capacity);
+        right = Arrays.copyOf(right, capacity);
+        parent = Arrays.copyOf(parent, capacity);
+        red = Arrays.copyOf(red, (capacity + 63) >>> 6);
+        keys = Arrays.copyOf(keys, capacity);
+        values = Arrays.copyOf(values, capacity);
+    }
+
+    /**
+     * return the slot of a deleted node to the free list.
+     */
+    private void freeNode(int node) {
+        keys[node] = null;
+        values[node] = null;
+        right[node] = freeHead;
+        freeHead = node;
+    }
+
+    private int searchHelper(T key) {
+        int node = root;
+        while (node != NIL) {
+            int cmp = key.compareTo(key(node));
+            if (cmp < 0)
+                node = left[node];
+            else if (cmp > 0)
+                node = right[node];
+            else
+                return node;
+        }
+        return NIL;
+    }
+
+    private void deleteNode(int z) {
+        size--;
+        int x, xParent, y = z;
+        boolean yOriginalRed = isRed(y);
+        if (left[z] == NIL) {
+            x = right[z];
+            xParent = parent[z];
+            rbHandler(z, x);
+        } else if (right[z] == NIL) {
+            x = left[z];
+            xParent = parent[z];
+            rbHandler(z, x);
+        } else {
+            y = right[z];
+            while (left[y] != NIL)
+                y = left[y];
+            yOriginalRed = isRed(y);
+            x = right[y];
+            if (parent[y] == z) {
+                xParent = y;
+            } else {
+                xParent = parent[y];
+                rbHandler(y, x);
+                right[y] = right[z];
+                parent[right[y]] = y;
+            }
+            rbHandler(z, y);
+            left[y] = left[z];
+            parent[left[y]] = y;
+            setRed(y, isRed(z));
+        }
+        freeNode(z);
+        if (!yOriginalRed)
+            fixDelete(x, xParent);
+    }
+
+    private void fixInsert(int z) {
+        while (isRed(parent[z])) {
+            int p = parent[z], g = parent[p];
+            if (p == right[g]) {
+                int u = left[g];
+                if (isRed(u)) {
+                    setRed(u, false);
+                    setRed(p, false);
+                    setRed(g, true);
+                    z = g;
+                } else {
+                    if (z == left[p]) {
+                        z = p;
+                        rightRotate(z);
+                        p = parent[z];
+                    }
+                    setRed(p, false);
+                    setRed(g, true);
+                    leftRotate(g);
+                }
+            } else {
+                int u = right[g];
+                if (isRed(u)) {
+                    setRed(u, false);
+                    setRed(p, false);
+                    setRed(g, true);
+                    z = g;
+                } else {
+                    if (z == right[p]) {
+                        z = p;
+                        leftRotate(z);
+                        p = parent[z];
+                    }
+                    setRed(p, false);
+                    setRed(g, true);
+                    rightRotate(g);
+                }
+            }
+        }
+        setRed(root, false);
+    }
+
+    private void fixDelete(int x, int xParent) {
+        while (x != root && !isRed(x)) {
+            if (x == left[xParent]) {
+                int s = right[xParent];
+                if (isRed(s)) {
+                    setRed(s, false);
+                    setRed(xParent, true);
+                    leftRotate(xParent);
+                    s = right[xParent];
+                }
+                if (!isRed(left[s]) && !isRed(right[s])) {
+                    setRed(s, true);
+                    x = xParent;
+                    xParent = parent[x];
+                } else {
+                    if (!isRed(right[s])) {
+                        setRed(left[s], false);
+                        setRed(s, true);
+                        rightRotate(s);
+                        s = right[xParent];
+                    }
+                    setRed(s, isRed(xParent));
+                    setRed(xParent, false);
+                    setRed(right[s], false);
+                    leftRotate(xParent);
+                    x = root;
+                }
+            } else {
+                int s = left[xParent];
+                if (isRed(s)) {
+                    setRed(s, false);
+                    setRed(xParent, true);
+                    rightRotate(xParent);
+                    s = left[xParent];
+                }
+                if (!isRed(left[s]) && !isRed(right[s])) {
+                    setRed(s, true);
+                    x = xParent;
+                    xParent = parent[x];
+                } else {
+                    if (!isRed(left[s])) {
+                        setRed(right[s], false);
+                        setRed(s, true);
+                        leftRotate(s);
+                        s = left[xParent];
+                    }
+                    setRed(s, isRed(xParent));
+                    setRed(xParent, false);
+                    setRed(left[s], false);
+                    rightRotate(xParent);
+                    x = root;
+                }
+            }
+        }
+        setRed(x, false);
+    }
+
+    /**
+     * replace the subtree rooted at u with the subtree rooted at v.
+     */
+    private void rbHandler(int u, int v) {
+        int p = parent[u];
+        if (p == NIL)
+            root = v;
+        else if (u == left[p])
+            left[p] = v;
+        else
+            right[p] = v;
+        if (v != NIL)
+            parent[v] = p;
+    }
+
+    private void leftRotate(int x) {
+        int y = right[x];
+        right[x] = left[y];
+        if (left[y] != NIL)
+            parent[left[y]] = x;
+        int p = parent[x];
+        parent[y] = p;
+        if (p == NIL)
+            root = y;
+        else if (x == left[p])
+            left[p] = y;
+        else
+            right[p] = y;
+        left[y] = x;
+        parent[x] = y;
+    }
+
+    private void rightRotate(int x) {
+        int y = left[x];
+        left[x] = right[y];
+        if (right[y] != NIL)
+            parent[right[y]] = x;
+        int p = parent[x];
+        parent[y] = p;
+        if (p == NIL)
+            root = y;
+        else if (x == right[p])
+            right[p] = y;
+        else
+            left[p] = y;
+        right[y] = x;
+        parent[x] = y;
+    }
+
+    /**
+     * {@link INode} handle over one slot of the arrays, created on demand by {@link #getRoot()} and the getters.
+     */
+    private final class NodeView implements INode<T, V> {
+        private final int index;
+
+        NodeView(int index) {
+            this.index = index;
+        }
+
+        private int indexOf(INode<T, V> node) {
+            return node == null ? NIL : ((NodeView) node).index;
+        }
+
+        private INode<T, V> view(int node) {
+            return node == NIL && index == NIL ? null : new NodeView(node);
+        }
+
+        @Override
+        public void setParent(INode<T, V> parent) { if (index != NIL) ArrayRedBlackTree.this.parent[index] = indexOf(parent); }
+
+        @Override
+        public INode<T, V> getParent() {
+            return index == NIL || parent[index] == NIL ? null : new NodeView(parent[index]);
+        }
+
+        @Override
+        public void setLeftChild(INode<T, V> leftChild) { if (index != NIL) left[index] = indexOf(leftChild); }
+
+        @Override
+        public INode<T, V> getLeftChild() { return view(left[index]); }
+
+        @Override
+        public void setRightChild(INode<T, V> rightChild) { if (index != NIL) right[index] = indexOf(rightChild); }
+
+        @Override
+        public INode<T, V> getRightChild() { return view(right[index]); }
+
+        @Override
+        public T getKey() { return key(index); }
+
+        @Override
+        public void setKey(T key) { if (index != NIL) keys[index] = key; }
+
+        @Override
+        public V getValue() { return value(index); }
+
+        @Override
+        public void setValue(V value) { if (index != NIL) values[index] = value; }
+
+        @Override
+        public boolean getColor() { return isRed(index); }
+
+        @Override
+        public void setColor(boolean color) { if (index != NIL) setRed(index, color); }
+
+        @Override
+        public boolean isNull() { return index == NIL; }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof ArrayRedBlackTree<?, ?>.NodeView && ((ArrayRedBlackTree<?, ?>.NodeView) o).index == index;
+        }
+
+        @Override
+        public int hashCode() { return index; }
+    }
+}
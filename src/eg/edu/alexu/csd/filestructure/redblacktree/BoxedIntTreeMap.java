@@ -0,0 +1,149 @@
+package eg.edu.alexu.csd.filestructure.redblacktree;
+
+import javax.management.RuntimeErrorException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * {@link ITreeMap} view of an {@link IIntTreeMap}, unboxing keys on the way in.
+ * Kept package-private so {@link TreeMap} stays the only public implementation of the interface.
+ * @param <V> type of the values.
+ */
+class BoxedIntTreeMap<V> implements ITreeMap<Integer, V> {
+
+    private final IIntTreeMap<V> map;
+
+    BoxedIntTreeMap(IIntTreeMap<V> map) {
+        this.map = map;
+    }
+
+    private static int unbox(Integer key) {
+        if (key == null)
+            throw new RuntimeErrorException(new Error());
+        return key;
+    }
+
+    @Override
+    public Map.Entry<Integer, V> ceilingEntry(Integer key) {
+        return map.ceilingEntry(unbox(key));
+    }
+
+    @Override
+    public Integer ceilingKey(Integer key) {
+        //the primitive map has no key to return on a miss, the entry tells it apart
+        Map.Entry<Integer, V> entry = map.ceilingEntry(unbox(key));
+        return entry == null ? null : entry.getKey();
+    }
+
+    @Override
+    public void clear() {
+        map.clear();
+    }
+
+    @Override
+    public boolean containsKey(Integer key) {
+        return map.containsKey(unbox(key));
+    }
+
+    @Override
+    public boolean containsValue(V value) {
+        return map.containsValue(value);
+    }
+
+    @Override
+    public Set<Map.Entry<Integer, V>> entrySet() {
+        return map.entrySet();
+    }
+
+    @Override
+    public Map.Entry<Integer, V> firstEntry() {
+        return map.firstEntry();
+    }
+
+    @Override
+    public Integer firstKey() {
+        if (map.size() == 0)
+            return null;
+        return map.firstKey();
+    }
+
+    @Override
+    public Map.Entry<Integer, V> floorEntry(Integer key) {
+        return map.floorEntry(unbox(key));
+    }
+
+    @Override
+    public Integer floorKey(Integer key) {
+        Map.Entry<Integer, V> entry = map.floorEntry(unbox(key));
+        return entry == null ? null : entry.getKey();
+    }
+
+    @Override
+    public V get(Integer key) {
+        return map.get(unbox(key));
+    }
+
+    @Override
+    public ArrayList<Map.Entry<Integer, V>> headMap(Integer toKey) {
+        return map.headMap(unbox(toKey));
+    }
+
+    @Override
+    public ArrayList<Map.Entry<Integer, V>> headMap(Integer toKey, boolean inclusive) {
+        return map.headMap(unbox(toKey), inclusive);
+    }
+
+    @Override
+    public Set<Integer> keySet() {
+        return map.keySet();
+    }
+
+    @Override
+    public Map.Entry<Integer, V> lastEntry() {
+        return map.lastEntry();
+    }
+
+    @Override
+    public Integer lastKey() {
+        if (map.size() == 0)
+            return null;
+        return map.lastKey();
+    }
+
+    @Override
+    public Map.Entry<Integer, V> pollFirstEntry() {
+        return map.pollFirstEntry();
+    }
+
+    @Override
+    public Map.Entry<Integer, V> pollLastEntry() {
+        return map.pollLastEntry();
+    }
+
+    @Override
+    public V put(Integer key, V value) {
+        return map.put(unbox(key), value);
+    }
+
+    @Override
+    public void putAll(Map<Integer, V> map) {
+        this.map.putAll(map);
+    }
+
+    @Override
+    public boolean remove(Integer key) {
+        return map.remove(unbox(key));
+    }
+
+    @Override
+    public int size() {
+        return map.size();
+    }
+
+    @Override
+    public Collection<V> values() {
+        return map.values();
+    }
+}
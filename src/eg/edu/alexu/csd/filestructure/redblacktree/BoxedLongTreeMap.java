@@ -0,0 +1,149 @@
+package eg.edu.alexu.csd.filestructure.redblacktree;
+
+import javax.management.RuntimeErrorException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * {@link ITreeMap} view of an {@link ILongTreeMap}, unboxing keys on the way in.
+ * Kept package-private so {@link TreeMap} stays the only public implementation of the interface.
+ * @param <V> type of the values.
+ */
+class BoxedLongTreeMap<V> implements ITreeMap<Long, V> {
+
+    private final ILongTreeMap<V> map;
+
+    BoxedLongTreeMap(ILongTreeMap<V> map) {
+        this.map = map;
+    }
+
+    private static long unbox(Long key) {
+        if (key == null)
+            throw new RuntimeErrorException(new Error());
+        return key;
+    }
+
+    @Override
+    public Map.Entry<Long, V> ceilingEntry(Long key) {
+        return map.ceilingEntry(unbox(key));
+    }
+
+    @Override
+    public Long ceilingKey(Long key) {
+        //the primitive map has no key to return on a miss, the entry tells it apart
+        Map.Entry<Long, V> entry = map.ceilingEntry(unbox(key));
+        return entry == null ? null : entry.getKey();
+    }
+
+    @Override
+    public void clear() {
+        map.clear();
+    }
+
+    @Override
+    public boolean containsKey(Long key) {
+        return map.containsKey(unbox(key));
+    }
+
+    @Override
+    public boolean containsValue(V value) {
+        return map.containsValue(value);
+    }
+
+    @Override
+    public Set<Map.Entry<Long, V>> entrySet() {
+        return map.entrySet();
+    }
+
+    @Override
+    public Map.Entry<Long, V> firstEntry() {
+        return map.firstEntry();
+    }
+
+    @Override
+    public Long firstKey() {
+        if (map.size() == 0)
+            return null;
+        return map.firstKey();
+    }
+
+    @Override
+    public Map.Entry<Long, V> floorEntry(Long key) {
+        return map.floorEntry(unbox(key));
+    }
+
+    @Override
+    public Long floorKey(Long key) {
+        Map.Entry<Long, V> entry = map.floorEntry(unbox(key));
+        return entry == null ? null : entry.getKey();
+    }
+
+    @Override
+    public V get(Long key) {
+        return map.get(unbox(key));
+    }
+
+    @Override
+    public ArrayList<Map.Entry<Long, V>> headMap(Long toKey) {
+        return map.headMap(unbox(toKey));
+    }
+
+    @Override
+    public ArrayList<Map.Entry<Long, V>> headMap(Long toKey, boolean inclusive) {
+        return map.headMap(unbox(toKey), inclusive);
+    }
+
+    @Override
+    public Set<Long> keySet() {
+        return map.keySet();
+    }
+
+    @Override
+    public Map.Entry<Long, V> lastEntry() {
+        return map.lastEntry();
+    }
+
+    @Override
+    public Long lastKey() {
+        if (map.size() == 0)
+            return null;
+        return map.lastKey();
+    }
+
+    @Override
+    public Map.Entry<Long, V> pollFirstEntry() {
+        return map.pollFirstEntry();
+    }
+
+    @Override
+    public Map.Entry<Long, V> pollLastEntry() {
+        return map.pollLastEntry();
+    }
+
+    @Override
+    public V put(Long key, V value) {
+        return map.put(unbox(key), value);
+    }
+
+    @Override
+    public void putAll(Map<Long, V> map) {
+        this.map.putAll(map);
+    }
+
+    @Override
+    public boolean remove(Long key) {
+        return map.remove(unbox(key));
+    }
+
+    @Override
+    public int size() {
+        return map.size();
+    }
+
+    @Override
+    public Collection<V> values() {
+        return map.values();
+    }
+}
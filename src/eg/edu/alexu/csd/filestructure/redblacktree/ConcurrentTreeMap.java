@@ -0,0 +1,181 @@
+package eg.edu.alexu.csd.filestructure.redblacktree;
+
+import javax.management.RuntimeErrorException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+/**
+ * thread safe tree map whose contents are an immutable {@link PersistentRedBlackTree} published through one atomic reference.
+ * Readers take the current version and traverse it without any lock, so they never block nor see a half done update.
+ * Writers build the next version from the one they read, which only copies a path, and publish it with a compare and set,
+ * retrying on the new version when another writer published first.
+ * Kept package-private so {@link TreeMap} stays the only public implementation of the interface,
+ * use {@link RedBlackTrees#concurrentTreeMap()} to create one.
+ */
+class ConcurrentTreeMap<T extends Comparable<T>, V> implements IConcurrentTreeMap<T, V> {
+    private final AtomicReference<PersistentRedBlackTree<T, V>> current;
+
+    ConcurrentTreeMap() {
+        this(null);
+    }
+
+    ConcurrentTreeMap(Comparator<? super T> comparator) {
+        this.current = new AtomicReference<>(new PersistentRedBlackTree<T, V>(comparator));
+    }
+
+    @Override
+    public PersistentRedBlackTree<T, V> snapshot() {
+        return current.get();
+    }
+
+    /**
+     * apply the given update to the current version and publish the result, retrying until no other writer got in between.
+     * @return the version the update was applied to.
+     */
+    private PersistentRedBlackTree<T, V> update(UnaryOperator<PersistentRedBlackTree<T, V>> update) {
+        while (true) {
+            PersistentRedBlackTree<T, V> tree = current.get();
+            PersistentRedBlackTree<T, V> next = update.apply(tree);
+            if (next == tree || current.compareAndSet(tree, next))
+                return tree;
+        }
+    }
+
+    @Override
+    public Map.Entry<T, V> ceilingEntry(T key) {
+        return current.get().ceilingEntry(key);
+    }
+
+    @Override
+    public T ceilingKey(T key) {
+        Map.Entry<T, V> entry = ceilingEntry(key);
+        return entry == null ? null : entry.getKey();
+    }
+
+    @Override
+    public void clear() {
+        update(PersistentRedBlackTree::clear);
+    }
+
+    @Override
+    public boolean containsKey(T key) {
+        return current.get().contains(key);
+    }
+
+    @Override
+    public boolean containsValue(V value) {
+        return current.get().containsValue(value);
+    }
+
+    @Override
+    public Set<Map.Entry<T, V>> entrySet() {
+        return new LinkedHashSet<>(current.get().entries());
+    }
+
+    @Override
+    public Map.Entry<T, V> firstEntry() {
+        return current.get().firstEntry();
+    }
+
+    @Override
+    public T firstKey() {
+        Map.Entry<T, V> entry = firstEntry();
+        return entry == null ? null : entry.getKey();
+    }
+
+    @Override
+    public Map.Entry<T, V> floorEntry(T key) {
+        return current.get().floorEntry(key);
+    }
+
+    @Override
+    public T floorKey(T key) {
+        Map.Entry<T, V> entry = floorEntry(key);
+        return entry == null ? null : entry.getKey();
+    }
+
+    @Override
+    public V get(T key) {
+        return current.get().search(key);
+    }
+
+    @Override
+    public ArrayList<Map.Entry<T, V>> headMap(T toKey) {
+        return current.get().headEntries(toKey, false);
+    }
+
+    @Override
+    public ArrayList<Map.Entry<T, V>> headMap(T toKey, boolean inclusive) {
+        return current.get().headEntries(toKey, inclusive);
+    }
+
+    @Override
+    public Set<T> keySet() {
+        Set<T> keys = new LinkedHashSet<>();
+        for (Map.Entry<T, V> entry : current.get().entries())
+            keys.add(entry.getKey());
+        return keys;
+    }
+
+    @Override
+    public Map.Entry<T, V> lastEntry() {
+        return current.get().lastEntry();
+    }
+
+    @Override
+    public T lastKey() {
+        Map.Entry<T, V> entry = lastEntry();
+        return entry == null ? null : entry.getKey();
+    }
+
+    @Override
+    public Map.Entry<T, V> pollFirstEntry() {
+        return update(tree -> tree.isEmpty() ? tree : tree.delete(tree.firstEntry().getKey())).firstEntry();
+    }
+
+    @Override
+    public Map.Entry<T, V> pollLastEntry() {
+        return update(tree -> tree.isEmpty() ? tree : tree.delete(tree.lastEntry().getKey())).lastEntry();
+    }
+
+    @Override
+    public V put(T key, V value) {
+        if (key == null || value == null)
+            throw new RuntimeErrorException(new Error());
+        return update(tree -> tree.insert(key, value)).search(key);
+    }
+
+    @Override
+    public void putAll(Map<T, V> map) {
+        if (map == null)
+            throw new RuntimeErrorException(new Error());
+        //all the mappings are published at once as a single version
+        update(tree -> tree.insertAll(map));
+    }
+
+    @Override
+    public boolean remove(T key) {
+        if (key == null)
+            throw new RuntimeErrorException(new Error());
+        return update(tree -> tree.delete(key)).contains(key);
+    }
+
+    @Override
+    public int size() {
+        return current.get().getSize();
+    }
+
+    @Override
+    public Collection<V> values() {
+        ArrayList<V> values = new ArrayList<>(size());
+        for (Map.Entry<T, V> entry : current.get().entries())
+            values.add(entry.getValue());
+        return values;
+    }
+}
@@ -0,0 +1,76 @@
+package eg.edu.alexu.csd.filestructure.redblacktree;
+
+import java.nio.ByteBuffer;
+
+/**
+ * encodes keys or values of a fixed number of bytes into the buffers of an off-heap tree.
+ * @param <T> type of the encoded objects.
+ */
+public interface FixedWidthCodec<T> {
+
+    FixedWidthCodec<Integer> INT = new FixedWidthCodec<>() {
+        @Override
+        public int width() { return Integer.BYTES; }
+
+        @Override
+        public void write(ByteBuffer buffer, int offset, Integer value) { buffer.putInt(offset, value); }
+
+        @Override
+        public Integer read(ByteBuffer buffer, int offset) { return buffer.getInt(offset); }
+
+        @Override
+        public int compare(Integer key, ByteBuffer buffer, int offset) { return Integer.compare(key, buffer.getInt(offset)); }
+    };
+
+    FixedWidthCodec<Long> LONG = new FixedWidthCodec<>() {
+        @Override
+        public int width() { return Long.BYTES; }
+
+        @Override
+        public void write(ByteBuffer buffer, int offset, Long value) { buffer.putLong(offset, value); }
+
+        @Override
+        public Long read(ByteBuffer buffer, int offset) { return buffer.getLong(offset); }
+
+        @Override
+        public int compare(Long key, ByteBuffer buffer, int offset) { return Long.compare(key, buffer.getLong(offset)); }
+    };
+
+    FixedWidthCodec<Double> DOUBLE = new FixedWidthCodec<>() {
+        @Override
+        public int width() { return Double.BYTES; }
+
+        @Override
+        public void write(ByteBuffer buffer, int offset, Double value) { buffer.putDouble(offset, value); }
+
+        @Override
+        public Double read(ByteBuffer buffer, int offset) { return buffer.getDouble(offset); }
+
+        @Override
+        public int compare(Double key, ByteBuffer buffer, int offset) { return Double.compare(key, buffer.getDouble(offset)); }
+    };
+
+    /**
+     * @return the number of bytes every encoded object takes.
+     */
+    int width();
+
+    /**
+     * encode the given object at the given absolute offset of the buffer.
+     */
+    void write(ByteBuffer buffer, int offset, T value);
+
+    /**
+     * decode the object stored at the given absolute offset of the buffer.
+     */
+    T read(ByteBuffer buffer, int offset);
+
+    /**
+     * compare the given key with the one stored at the given offset, override to avoid decoding it.
+     * @return negative, zero or positive as the given key is less than, equal to or greater than the stored one.
+     */
+    @SuppressWarnings("unchecked")
+    default int compare(T key, ByteBuffer buffer, int offset) {
+        return ((Comparable<T>) key).compareTo(read(buffer, offset));
+    }
+}
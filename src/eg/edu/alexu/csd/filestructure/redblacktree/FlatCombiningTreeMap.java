@@ -0,0 +1,319 @@
+package eg.edu.alexu.csd.filestructure.redblacktree;
+
+import javax.management.RuntimeErrorException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * thread safe view of a tree map whose puts and removes are flat combined.
+ * A writer publishes its operation in a slot and then either waits for it to be applied or takes the lock itself;
+ * the thread holding the lock empties every slot, sorts the operations by key so consecutive descents walk the same
+ * nodes, and applies the whole batch before handing the lock over once instead of once per operation.
+ * The other methods run under the same lock, and returned collections and entries are snapshots.
+ * Kept package-private so {@link TreeMap} stays the only public implementation of the interface,
+ * use {@link RedBlackTrees#flatCombiningTreeMap(ITreeMap)} to create one.
+ */
+class FlatCombiningTreeMap<T extends Comparable<T>, V> implements ITreeMap<T, V> {
+    //a waiting writer spins this many times before yielding to the thread holding the lock
+    private static final int MAX_SPINS = 1 << 6;
+
+    private final ITreeMap<T, V> map;
+    private final Comparator<? super T> order;
+    private final ReentrantLock lock = new ReentrantLock();
+    //published operations, a thread starts probing for a free slot at the one it was given first
+    private final AtomicReferenceArray<Operation<T, V>> slots;
+    private final AtomicInteger nextSlot = new AtomicInteger();
+    //each thread reuses one operation, it is only published again after it was applied
+    private final ThreadLocal<Operation<T, V>> operations = ThreadLocal.withInitial(this::newOperation);
+    //only touched by the thread holding the lock, the batch in arrival order and a copy of it sorted by key
+    private final Operation<T, V>[] batch;
+    private final Operation<T, V>[] sorted;
+
+    private static final class Operation<T, V> {
+        final int slot;
+        boolean remove;
+        T key;
+        V value;
+        boolean removed;
+        V previous;
+        RuntimeException failure;
+        volatile boolean done;
+
+        Operation(int slot) {
+            this.slot = slot;
+        }
+    }
+
+    FlatCombiningTreeMap(ITreeMap<T, V> map) {
+        if (map == null)
+            throw new RuntimeErrorException(new Error());
+        this.map = map;
+        Comparator<? super T> comparator = map instanceof TreeMap ? ((TreeMap<T, V>) map).comparator() : null;
+        this.order = comparator == null ? Comparator.naturalOrder() : comparator;
+        int slotCount = Integer.highestOneBit(Math.max(1, 2 * Runtime.getRuntime().availableProcessors() - 1)) << 1;
+        this.slots = new AtomicReferenceArray<>(slotCount);
+        this.batch = newBatch(slotCount);
+        this.sorted = newBatch(slotCount);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T, V> Operation<T, V>[] newBatch(int length) {
+        //the array stays private to the map and only ever holds operations of its own type
+        return (Operation<T, V>[]) new Operation<?, ?>[length];
+    }
+
+    private Operation<T, V> newOperation() {
+        return new Operation<>(nextSlot.getAndIncrement() & (slots.length() - 1));
+    }
+
+    private <R> R locked(Supplier<R> read) {
+        lock.lock();
+        try {
+            return read.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static <T, V> Map.Entry<T, V> snapshot(Map.Entry<T, V> entry) {
+        return entry == null ? null : new AbstractMap.SimpleImmutableEntry<>(entry);
+    }
+
+    /**
+     * publish an operation and return once it was applied, by this thread or by whoever holds the lock.
+     */
+    private Operation<T, V> combine(boolean remove, T key, V value) {
+        Operation<T, V> operation = operations.get();
+        operation.remove = remove;
+        operation.key = key;
+        operation.value = value;
+        operation.failure = null;
+        operation.previous = null;
+        operation.done = false;
+        if (!publish(operation)) {
+            //every slot is taken, apply it directly rather than waiting for one to free up
+            locked(() -> {
+                apply(operation);
+                return null;
+            });
+        }
+        for (int spins = 0; !operation.done; spins++) {
+            if (lock.tryLock()) {
+                try {
+                    applyPublished();
+                } finally {
+                    lock.unlock();
+                }
+            } else if (spins < MAX_SPINS) {
+                Thread.onSpinWait();
+            } else {
+                //the combiner may be descheduled, let it run rather than burning its time slice
+                Thread.yield();
+            }
+        }
+        operation.key = null;
+        operation.value = null;
+        if (operation.failure != null)
+            throw operation.failure;
+        return operation;
+    }
+
+    private boolean publish(Operation<T, V> operation) {
+        int mask = slots.length() - 1;
+        for (int i = 0; i <= mask; i++) {
+            if (slots.compareAndSet((operation.slot + i) & mask, null, operation))
+                return true;
+        }
+        return false;
+    }
+
+    private void applyPublished() {
+        int count = 0;
+        for (int i = 0; i < slots.length(); i++) {
+            Operation<T, V> operation = slots.get(i);
+            if (operation != null) {
+                slots.set(i, null);
+                batch[count++] = operation;
+            }
+        }
+        Operation<T, V>[] pending = batch;
+        int applied = 0;
+        try {
+            //the copy is sorted, a comparator failing halfway through a merge can leave an array with operations lost
+            System.arraycopy(batch, 0, sorted, 0, count);
+            try {
+                //a stable sort, two operations on one key come from different threads so either order is valid
+                Arrays.sort(sorted, 0, count, (a, b) -> order.compare(a.key, b.key));
+                pending = sorted;
+            } catch (RuntimeException e) {
+                //apply in arrival order, so the failing comparison is reported to the operation that caused it
+            }
+            for (; applied < count; applied++)
+                apply(pending[applied]);
+        } finally {
+            //their writers would otherwise wait forever, whatever escaped is rethrown by this thread
+            for (int i = applied; i < count; i++) {
+                pending[i].failure = new RuntimeErrorException(new Error());
+                pending[i].done = true;
+            }
+            Arrays.fill(batch, 0, count, null);
+            Arrays.fill(sorted, 0, count, null);
+        }
+    }
+
+    private void apply(Operation<T, V> operation) {
+        try {
+            if (operation.remove)
+                operation.removed = map.remove(operation.key);
+            else
+                operation.previous = map.put(operation.key, operation.value);
+        } catch (RuntimeException e) {
+            operation.failure = e;
+        }
+        operation.done = true;
+    }
+
+    @Override
+    public Map.Entry<T, V> ceilingEntry(T key) {
+        return locked(() -> snapshot(map.ceilingEntry(key)));
+    }
+
+    @Override
+    public T ceilingKey(T key) {
+        return locked(() -> map.ceilingKey(key));
+    }
+
+    @Override
+    public void clear() {
+        locked(() -> {
+            map.clear();
+            return null;
+        });
+    }
+
+    @Override
+    public boolean containsKey(T key) {
+        return locked(() -> map.containsKey(key));
+    }
+
+    @Override
+    public boolean containsValue(V value) {
+        return locked(() -> map.containsValue(value));
+    }
+
+    @Override
+    public Set<Map.Entry<T, V>> entrySet() {
+        return locked(() -> {
+            Set<Map.Entry<T, V>> entries = new LinkedHashSet<>();
+            for (Map.Entry<T, V> entry : map.entrySet())
+                entries.add(snapshot(entry));
+            return entries;
+        });
+    }
+
+    @Override
+    public Map.Entry<T, V> firstEntry() {
+        return locked(() -> snapshot(map.firstEntry()));
+    }
+
+    @Override
+    public T firstKey() {
+        return locked(map::firstKey);
+    }
+
+    @Override
+    public Map.Entry<T, V> floorEntry(T key) {
+        return locked(() -> snapshot(map.floorEntry(key)));
+    }
+
+    @Override
+    public T floorKey(T key) {
+        return locked(() -> map.floorKey(key));
+    }
+
+    @Override
+    public V get(T key) {
+        return locked(() -> map.get(key));
+    }
+
+    @Override
+    public ArrayList<Map.Entry<T, V>> headMap(T toKey) {
+        return locked(() -> new ArrayList<>(map.headMap(toKey)));
+    }
+
+    @Override
+    public ArrayList<Map.Entry<T, V>> headMap(T toKey, boolean inclusive) {
+        return locked(() -> new ArrayList<>(map.headMap(toKey, inclusive)));
+    }
+
+    @Override
+    public Set<T> keySet() {
+        return locked(() -> new LinkedHashSet<>(map.keySet()));
+    }
+
+    @Override
+    public Map.Entry<T, V> lastEntry() {
+        return locked(() -> snapshot(map.lastEntry()));
+    }
+
+    @Override
+    public T lastKey() {
+        return locked(map::lastKey);
+    }
+
+    @Override
+    public Map.Entry<T, V> pollFirstEntry() {
+        return locked(() -> snapshot(map.pollFirstEntry()));
+    }
+
+    @Override
+    public Map.Entry<T, V> pollLastEntry() {
+        return locked(() -> snapshot(map.pollLastEntry()));
+    }
+
+    @Override
+    public V put(T key, V value) {
+        //a null key could not be sorted into a batch, the map reports it directly
+        if (key == null)
+            return locked(() -> map.put(key, value));
+        Operation<T, V> operation = combine(false, key, value);
+        V previous = operation.previous;
+        operation.previous = null;
+        return previous;
+    }
+
+    @Override
+    public void putAll(Map<T, V> source) {
+        locked(() -> {
+            map.putAll(source);
+            return null;
+        });
+    }
+
+    @Override
+    public boolean remove(T key) {
+        if (key == null)
+            return locked(() -> map.remove(key));
+        return combine(true, key, null).removed;
+    }
+
+    @Override
+    public int size() {
+        return locked(map::size);
+    }
+
+    @Override
+    public Collection<V> values() {
+        return locked(() -> new ArrayList<>(map.values()));
+    }
+}
@@ -0,0 +1,10 @@
+package eg.edu.alexu.csd.filestructure.redblacktree;
+
+public interface IConcurrentTreeMap<T extends Comparable<T>, V> extends ITreeMap<T, V> {
+
+	/**
+	 * Returns the current version of the map in O(1); later updates to the map do not change it.
+	 * @return an immutable snapshot of the map.
+	 */
+	public PersistentRedBlackTree<T, V> snapshot();
+}
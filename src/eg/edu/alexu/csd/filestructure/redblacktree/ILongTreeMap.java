@@ -0,0 +1,170 @@
+package eg.edu.alexu.csd.filestructure.redblacktree;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * a tree map keyed by primitive longs, mirroring {@link ITreeMap} without boxing the keys on lookups.
+ * Methods returning a single key throw when there is no such key since a primitive cannot be null.
+ * @param <V> type of the values.
+ */
+public interface ILongTreeMap<V> {
+
+	/**
+	 * Returns a key-value mapping associated with the least key greater than or equal to the given key, or null if there is no such key.
+	 * @param key
+	 * @return
+	 */
+	public Map.Entry<Long, V> ceilingEntry(long key);
+
+	/**
+	 * Returns the least key greater than or equal to the given key.
+	 * @param key
+	 * @return
+	 */
+	public long ceilingKey(long key);
+
+	/**
+	 * Removes all of the mappings from this map.
+	 */
+	public void clear();
+
+	/**
+	 * Returns true if this map contains a mapping for the specified key.
+	 * @param key
+	 * @return
+	 */
+	public boolean containsKey(long key);
+
+	/**
+	 * Returns true if this map maps one or more keys to the specified value.
+	 * @param value
+	 * @return
+	 */
+	public boolean containsValue(V value);
+
+	/**
+	 * Returns a Set view of the mappings contained in this map in ascending key order.
+	 * @return
+	 */
+	public Set<Map.Entry<Long, V>> entrySet();
+
+	/**
+	 * Returns a key-value mapping associated with the least key in this map, or null if the map is empty.
+	 * @return
+	 */
+	public Map.Entry<Long, V> firstEntry();
+
+	/**
+	 * Returns the first (lowest) key currently in this map.
+	 * @return
+	 */
+	public long firstKey();
+
+	/**
+	 * Returns a key-value mapping associated with the greatest key less than or equal to the given key, or null if there is no such key.
+	 * @param key
+	 * @return
+	 */
+	public Map.Entry<Long, V> floorEntry(long key);
+
+	/**
+	 * Returns the greatest key less than or equal to the given key.
+	 * @param key
+	 * @return
+	 */
+	public long floorKey(long key);
+
+	/**
+	 * Returns the value to which the specified key is mapped, or null if this map contains no mapping for the key.
+	 * @param key
+	 * @return
+	 */
+	public V get(long key);
+
+	/**
+	 * Returns a view of the portion of this map whose keys are strictly less than toKey in ascending order.
+	 * @param toKey
+	 * @return
+	 */
+	public ArrayList<Map.Entry<Long, V>> headMap(long toKey);
+
+	/**
+	 * Returns a view of the portion of this map whose keys are less than (or equal to, if inclusive is true) toKey in ascending order.
+	 * @param toKey
+	 * @param inclusive
+	 * @return
+	 */
+	public ArrayList<Map.Entry<Long, V>> headMap(long toKey, boolean inclusive);
+
+	/**
+	 * Returns a Set view of the keys contained in this map.
+	 * @return
+	 */
+	public Set<Long> keySet();
+
+	/**
+	 * Returns a key-value mapping associated with the greatest key in this map, or null if the map is empty.
+	 * @return
+	 */
+	public Map.Entry<Long, V> lastEntry();
+
+	/**
+	 * Returns the last (highest) key currently in this map.
+	 * @return
+	 */
+	public long lastKey();
+
+	/**
+	 * Removes and returns a key-value mapping associated with the least key in this map, or null if the map is empty.
+	 * @return
+	 */
+	public Map.Entry<Long, V> pollFirstEntry();
+
+	/**
+	 * Removes and returns a key-value mapping associated with the greatest key in this map, or null if the map is empty.
+	 * @return
+	 */
+	public Map.Entry<Long, V> pollLastEntry();
+
+	/**
+	 * Associates the specified value with the specified key in this map.
+	 * @param key
+	 * @param value
+	 * @return the previous value of the key, or null if it was not in the map.
+	 */
+	public V put(long key, V value);
+
+	/**
+	 * Copies all of the mappings from the specified map to this map.
+	 * @param map
+	 */
+	public void putAll(Map<Long, V> map);
+
+	/**
+	 * Removes the mapping for this key from this TreeMap if present.
+	 * @param key
+	 * @return true if removed and false otherwise.
+	 */
+	public boolean remove(long key);
+
+	/**
+	 * Returns the number of key-value mappings in this map.
+	 * @return
+	 */
+	public int size();
+
+	/**
+	 * Returns a Collection view of the values contained in this map.
+	 * @return
+	 */
+	public Collection<V> values();
+
+	/**
+	 * Returns an {@link ITreeMap} backed by this map, so code written against boxed keys keeps working.
+	 * @return
+	 */
+	public ITreeMap<Long, V> asTreeMap();
+}
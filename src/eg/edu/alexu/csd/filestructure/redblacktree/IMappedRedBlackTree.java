@@ -0,0 +1,18 @@
+package eg.edu.alexu.csd.filestructure.redblacktree;
+
+public interface IMappedRedBlackTree<T extends Comparable<T>, V> extends IOffHeapRedBlackTree<T, V> {
+
+	/**
+	 * Write the tree header and flush every modified page of the file to the storage device.
+	 * Changes made since the last call are not guaranteed to survive a crash.
+	 */
+	public void force();
+
+	/**
+	 * Force the tree to the file and close it, the tree must not be used afterwards.
+	 * Java has no explicit unmap: the tree drops its references to the mapped buffers,
+	 * and the pages stay mapped until the garbage collector reclaims them.
+	 */
+	@Override
+	public void close();
+}
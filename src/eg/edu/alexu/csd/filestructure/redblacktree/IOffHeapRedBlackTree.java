@@ -0,0 +1,16 @@
+package eg.edu.alexu.csd.filestructure.redblacktree;
+
+public interface IOffHeapRedBlackTree<T extends Comparable<T>, V> extends IRedBlackTree<T, V>, AutoCloseable {
+
+	/**
+	 * return the number of keys in the tree.
+	 * @return size of the tree.
+	 */
+	public int getSize();
+
+	/**
+	 * Release all the memory held by the tree at once, the tree must not be used afterwards.
+	 */
+	@Override
+	public void close();
+}
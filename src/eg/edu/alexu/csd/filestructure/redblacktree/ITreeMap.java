@@ -129,8 +129,9 @@ public interface ITreeMap<T extends Comparable<T>, V> {
 	 * Associates the specified value with the specified key in this map.
 	 * @param key
 	 * @param value
+	 * @return the previous value associated with key, or null if there was no mapping for key.
 	 */
-	public void put(T key, V value);
+	public V put(T key, V value);
 
 	/**
 	 * Copies all of the mappings from the specified map to this map.
@@ -0,0 +1,29 @@
+package eg.edu.alexu.csd.filestructure.redblacktree;
+
+/**
+ * counts of what a batched insert did to the tree.
+ */
+public final class InsertAllResult {
+    private final int inserted;
+    private final int updated;
+
+    InsertAllResult(int inserted, int updated) {
+        this.inserted = inserted;
+        this.updated = updated;
+    }
+
+    /**
+     * @return the number of keys that were not in the tree before the insert.
+     */
+    public int getInserted() { return inserted; }
+
+    /**
+     * @return the number of keys already in the tree whose values were replaced.
+     */
+    public int getUpdated() { return updated; }
+
+    @Override
+    public String toString() {
+        return "inserted=" + inserted + ", updated=" + updated;
+    }
+}
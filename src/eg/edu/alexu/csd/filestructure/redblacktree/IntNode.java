@@ -0,0 +1,31 @@
+package eg.edu.alexu.csd.filestructure.redblacktree;
+
+/**
+ * node of a {@link IntRedBlackTree}, holding the key as a raw int.
+ * @param <V> type of the value.
+ */
+class IntNode<V> extends PrimitiveNode<IntNode<V>, V> {
+    /**
+     * the single black leaf shared by all int-keyed trees.
+     */
+    private static final IntNode<?> NIL = new IntNode<>();
+
+    int key;
+
+    IntNode(int key, V value) {
+        super(value, nil());
+        this.key = key;
+    }
+
+    private IntNode() {
+    }
+
+    /**
+     * @return the shared nil leaf.
+     */
+    @SuppressWarnings("unchecked")
+    static <V> IntNode<V> nil() { return (IntNode<V>) NIL; }
+
+    @Override
+    boolean isNull() { return this == NIL; }
+}
@@ -0,0 +1,127 @@
+package eg.edu.alexu.csd.filestructure.redblacktree;
+
+import javax.management.RuntimeErrorException;
+
+/**
+ * red black tree storing its keys as raw ints and comparing them with the primitive operators,
+ * so neither the nodes nor the descents box the keys.
+ * @param <V> type of the values.
+ */
+public class IntRedBlackTree<V> extends PrimitiveRedBlackTree<IntNode<V>, V> implements IIntRedBlackTree<V> {
+
+    public IntRedBlackTree() {
+        super(IntNode.nil());
+    }
+
+    @Override
+    public V search(int key) {
+        IntNode<V> result = searchHelper(key);
+        if (result == null)
+            return null;
+        return result.value;
+    }
+
+    @Override
+    public boolean contains(int key) { return searchHelper(key) != null; }
+
+    @Override
+    public void insert(int key, V value) {
+        put(key, value);
+    }
+
+    /**
+     * associate the value with the key in one descent.
+     * @return the previous value of the key, or null if it was not in the tree.
+     */
+    public V put(int key, V value) {
+        if (value == null)
+            throw new RuntimeErrorException(new Error());
+        IntNode<V> x = this.root;
+        IntNode<V> y = null;
+        //get the parent of the inserted node
+        while (!x.isNull()) {
+            y = x;
+            if (key < x.key) {
+                x = x.leftChild;
+            } else if (key > x.key) {
+                x = x.rightChild;
+            } else {
+                //change the value of the node if the key already exists
+                V previous = x.value;
+                x.value = value;
+                return previous;
+            }
+        }
+        attach(y, new IntNode<>(key, value), y != null && key < y.key);
+        return null;
+    }
+
+    @Override
+    public boolean delete(int key) {
+        IntNode<V> z = searchHelper(key);
+        if (z == null)
+            return false;
+        deleteNode(z);
+        return true;
+    }
+
+    /**
+     * search for the node with given key.
+     * @param key the key searched for.
+     * @return the node with the key searched for or null if not found.
+     */
+    IntNode<V> searchHelper(int key) {
+        IntNode<V> node = root;
+        while (!node.isNull()) {
+            if (key < node.key)
+                node = node.leftChild;
+            else if (key > node.key)
+                node = node.rightChild;
+            else
+                return node;
+        }
+        return null;
+    }
+
+    /**
+     * get the node with the least key greater than (or equal to, if inclusive) the given key in one descent.
+     * @param key the lower bound.
+     * @param inclusive whether a node with the given key itself qualifies.
+     * @return the ceiling node or null if there is none.
+     */
+    IntNode<V> ceilingNode(int key, boolean inclusive) {
+        IntNode<V> node = root, best = null;
+        while (!node.isNull()) {
+            if (key < node.key || (inclusive && key == node.key)) {
+                best = node;
+                if (key == node.key)
+                    return node;
+                node = node.leftChild;
+            } else {
+                node = node.rightChild;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * get the node with the greatest key less than (or equal to, if inclusive) the given key in one descent.
+     * @param key the upper bound.
+     * @param inclusive whether a node with the given key itself qualifies.
+     * @return the floor node or null if there is none.
+     */
+    IntNode<V> floorNode(int key, boolean inclusive) {
+        IntNode<V> node = root, best = null;
+        while (!node.isNull()) {
+            if (key > node.key || (inclusive && key == node.key)) {
+                best = node;
+                if (key == node.key)
+                    return node;
+                node = node.rightChild;
+            } else {
+                node = node.leftChild;
+            }
+        }
+        return best;
+    }
+}
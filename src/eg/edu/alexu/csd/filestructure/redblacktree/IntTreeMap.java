@@ -0,0 +1,182 @@
+package eg.edu.alexu.csd.filestructure.redblacktree;
+
+import javax.management.RuntimeErrorException;
+import java.util.*;
+
+/**
+ * tree map keyed by primitive ints and backed by a {@link IntRedBlackTree}.
+ * Keys are only boxed when they leave the map inside entries and key sets.
+ * @param <V> type of the values.
+ */
+public class IntTreeMap<V> implements IIntTreeMap<V> {
+
+    private final IntRedBlackTree<V> redBlackTree = new IntRedBlackTree<>();
+
+    public IntTreeMap() {
+    }
+
+    private Map.Entry<Integer, V> nodeToSimpleEntry(IntNode<V> node) {
+        if (node == null)
+            return null;
+        return new AbstractMap.SimpleEntry<>(node.key, node.value);
+    }
+
+    private int keyOf(IntNode<V> node) {
+        if (node == null)
+            throw new RuntimeErrorException(new Error());
+        return node.key;
+    }
+
+    @Override
+    public Map.Entry<Integer, V> ceilingEntry(int key) {
+        return nodeToSimpleEntry(redBlackTree.ceilingNode(key, true));
+    }
+
+    @Override
+    public int ceilingKey(int key) {
+        return keyOf(redBlackTree.ceilingNode(key, true));
+    }
+
+    @Override
+    public void clear() {
+        redBlackTree.clear();
+    }
+
+    @Override
+    public boolean containsKey(int key) {
+        return redBlackTree.contains(key);
+    }
+
+    @Override
+    public boolean containsValue(V value) {
+        if (value == null)
+            throw new RuntimeErrorException(new Error());
+        return redBlackTree.containsValue(value);
+    }
+
+    @Override
+    public Set<Map.Entry<Integer, V>> entrySet() {
+        Set<Map.Entry<Integer, V>> entrySet = new LinkedHashSet<>();
+        for (IntNode<V> node = redBlackTree.minimum(); node != null; node = redBlackTree.successor(node))
+            entrySet.add(nodeToSimpleEntry(node));
+        return entrySet;
+    }
+
+    @Override
+    public Map.Entry<Integer, V> firstEntry() {
+        return nodeToSimpleEntry(redBlackTree.minimum());
+    }
+
+    @Override
+    public int firstKey() {
+        return keyOf(redBlackTree.minimum());
+    }
+
+    @Override
+    public Map.Entry<Integer, V> floorEntry(int key) {
+        return nodeToSimpleEntry(redBlackTree.floorNode(key, true));
+    }
+
+    @Override
+    public int floorKey(int key) {
+        return keyOf(redBlackTree.floorNode(key, true));
+    }
+
+    @Override
+    public V get(int key) {
+        return redBlackTree.search(key);
+    }
+
+    @Override
+    public ArrayList<Map.Entry<Integer, V>> headMap(int toKey) {
+        return headMap(toKey, false);
+    }
+
+    @Override
+    public ArrayList<Map.Entry<Integer, V>> headMap(int toKey, boolean inclusive) {
+        ArrayList<Map.Entry<Integer, V>> headMapList = new ArrayList<>();
+        for (IntNode<V> node = redBlackTree.minimum(); node != null; node = redBlackTree.successor(node)) {
+            if (node.key > toKey || (node.key == toKey && !inclusive))
+                break;
+            headMapList.add(nodeToSimpleEntry(node));
+        }
+        return headMapList;
+    }
+
+    @Override
+    public Set<Integer> keySet() {
+        Set<Integer> keys = new LinkedHashSet<>();
+        for (IntNode<V> node = redBlackTree.minimum(); node != null; node = redBlackTree.successor(node))
+            keys.add(node.key);
+        return keys;
+    }
+
+    @Override
+    public Map.Entry<Integer, V> lastEntry() {
+        return nodeToSimpleEntry(redBlackTree.maximum());
+    }
+
+    @Override
+    public int lastKey() {
+        return keyOf(redBlackTree.maximum());
+    }
+
+    @Override
+    public Map.Entry<Integer, V> pollFirstEntry() {
+        IntNode<V> node = redBlackTree.minimum();
+        if (node == null)
+            return null;
+        Map.Entry<Integer, V> entry = nodeToSimpleEntry(node);
+        redBlackTree.deleteNode(node);
+        return entry;
+    }
+
+    @Override
+    public Map.Entry<Integer, V> pollLastEntry() {
+        IntNode<V> node = redBlackTree.maximum();
+        if (node == null)
+            return null;
+        Map.Entry<Integer, V> entry = nodeToSimpleEntry(node);
+        redBlackTree.deleteNode(node);
+        return entry;
+    }
+
+    @Override
+    public V put(int key, V value) {
+        return redBlackTree.put(key, value);
+    }
+
+    @Override
+    public void putAll(Map<Integer, V> map) {
+        if (map == null)
+            throw new RuntimeErrorException(new Error());
+        for (Map.Entry<Integer, V> entry : map.entrySet()) {
+            if (entry.getKey() == null)
+                throw new RuntimeErrorException(new Error());
+            put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Override
+    public boolean remove(int key) {
+        return redBlackTree.delete(key);
+    }
+
+    @Override
+    public int size() {
+        return redBlackTree.getSize();
+    }
+
+    @Override
+    public Collection<V> values() {
+        Collection<V> values = new ArrayList<>(redBlackTree.getSize());
+        for (IntNode<V> node = redBlackTree.minimum(); node != null; node = redBlackTree.successor(node))
+            values.add(node.value);
+        return values;
+    }
+
+    @Override
+    public ITreeMap<Integer, V> asTreeMap() {
+        return new BoxedIntTreeMap<>(this);
+    }
+}
@@ -0,0 +1,31 @@
+package eg.edu.alexu.csd.filestructure.redblacktree;
+
+/**
+ * node of a {@link LongRedBlackTree}, holding the key as a raw long.
+ * @param <V> type of the value.
+ */
+class LongNode<V> extends PrimitiveNode<LongNode<V>, V> {
+    /**
+     * the single black leaf shared by all long-keyed trees.
+     */
+    private static final LongNode<?> NIL = new LongNode<>();
+
+    long key;
+
+    LongNode(long key, V value) {
+        super(value, nil());
+        this.key = key;
+    }
+
+    private LongNode() {
+    }
+
+    /**
+     * @return the shared nil leaf.
+     */
+    @SuppressWarnings("unchecked")
+    static <V> LongNode<V> nil() { return (LongNode<V>) NIL; }
+
+    @Override
+    boolean isNull() { return this == NIL; }
+}
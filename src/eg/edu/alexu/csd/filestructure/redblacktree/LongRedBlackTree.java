@@ -0,0 +1,127 @@
+package eg.edu.alexu.csd.filestructure.redblacktree;
+
+import javax.management.RuntimeErrorException;
+
+/**
+ * red black tree storing its keys as raw longs and comparing them with the primitive operators,
+ * so neither the nodes nor the descents box the keys.
+ * @param <V> type of the values.
+ */
+public class LongRedBlackTree<V> extends PrimitiveRedBlackTree<LongNode<V>, V> implements ILongRedBlackTree<V> {
+
+    public LongRedBlackTree() {
+        super(LongNode.nil());
+    }
+
+    @Override
+    public V search(long key) {
+        LongNode<V> result = searchHelper(key);
+        if (result == null)
+            return null;
+        return result.value;
+    }
+
+    @Override
+    public boolean contains(long key) { return searchHelper(key) != null; }
+
+    @Override
+    public void insert(long key, V value) {
+        put(key, value);
+    }
+
+    /**
+     * associate the value with the key in one descent.
+     * @return the previous value of the key, or null if it was not in the tree.
+     */
+    public V put(long key, V value) {
+        if (value == null)
+            throw new RuntimeErrorException(new Error());
+        LongNode<V> x = this.root;
+        LongNode<V> y = null;
+        //get the parent of the inserted node
+        while (!x.isNull()) {
+            y = x;
+            if (key < x.key) {
+                x = x.leftChild;
+            } else if (key > x.key) {
+                x = x.rightChild;
+            } else {
+                //change the value of the node if the key already exists
+                V previous = x.value;
+                x.value = value;
+                return previous;
+            }
+        }
+        attach(y, new LongNode<>(key, value), y != null && key < y.key);
+        return null;
+    }
+
+    @Override
+    public boolean delete(long key) {
+        LongNode<V> z = searchHelper(key);
+        if (z == null)
+            return false;
+        deleteNode(z);
+        return true;
+    }
+
+    /**
+     * search for the node with given key.
+     * @param key the key searched for.
+     * @return the node with the key searched for or null if not found.
+     */
+    LongNode<V> searchHelper(long key) {
+        LongNode<V> node = root;
+        while (!node.isNull()) {
+            if (key < node.key)
+                node = node.leftChild;
+            else if (key > node.key)
+                node = node.rightChild;
+            else
+                return node;
+        }
+        return null;
+    }
+
+    /**
+     * get the node with the least key greater than (or equal to, if inclusive) the given key in one descent.
+     * @param key the lower bound.
+     * @param inclusive whether a node with the given key itself qualifies.
+     * @return the ceiling node or null if there is none.
+     */
+    LongNode<V> ceilingNode(long key, boolean inclusive) {
+        LongNode<V> node = root, best = null;
+        while (!node.isNull()) {
+            if (key < node.key || (inclusive && key == node.key)) {
+                best = node;
+                if (key == node.key)
+                    return node;
+                node = node.leftChild;
+            } else {
+                node = node.rightChild;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * get the node with the greatest key less than (or equal to, if inclusive) the given key in one descent.
+     * @param key the upper bound.
+     * @param inclusive whether a node with the given key itself qualifies.
+     * @return the floor node or null if there is none.
+     */
+    LongNode<V> floorNode(long key, boolean inclusive) {
+        LongNode<V> node = root, best = null;
+        while (!node.isNull()) {
+            if (key > node.key || (inclusive && key == node.key)) {
+                best = node;
+                if (key == node.key)
+                    return node;
+                node = node.rightChild;
+            } else {
+                node = node.leftChild;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,182 @@
+package eg.edu.alexu.csd.filestructure.redblacktree;
+
+import javax.management.RuntimeErrorException;
+import java.util.*;
+
+/**
+ * tree map keyed by primitive longs and backed by a {@link LongRedBlackTree}.
+ * Keys are only boxed when they leave the map inside entries and key sets.
+ * @param <V> type of the values.
+ */
+public class LongTreeMap<V> implements ILongTreeMap<V> {
+
+    private final LongRedBlackTree<V> redBlackTree = new LongRedBlackTree<>();
+
+    public LongTreeMap() {
+    }
+
+    private Map.Entry<Long, V> nodeToSimpleEntry(LongNode<V> node) {
+        if (node == null)
+            return null;
+        return new AbstractMap.SimpleEntry<>(node.key, node.value);
+    }
+
+    private long keyOf(LongNode<V> node) {
+        if (node == null)
+            throw new RuntimeErrorException(new Error());
+        return node.key;
+    }
+
+    @Override
+    public Map.Entry<Long, V> ceilingEntry(long key) {
+        return nodeToSimpleEntry(redBlackTree.ceilingNode(key, true));
+    }
+
+    @Override
+    public long ceilingKey(long key) {
+        return keyOf(redBlackTree.ceilingNode(key, true));
+    }
+
+    @Override
+    public void clear() {
+        redBlackTree.clear();
+    }
+
+    @Override
+    public boolean containsKey(long key) {
+        return redBlackTree.contains(key);
+    }
+
+    @Override
+    public boolean containsValue(V value) {
+        if (value == null)
+            throw new RuntimeErrorException(new Error());
+        return redBlackTree.containsValue(value);
+    }
+
+    @Override
+    public Set<Map.Entry<Long, V>> entrySet() {
+        Set<Map.Entry<Long, V>> entrySet = new LinkedHashSet<>();
+        for (LongNode<V> node = redBlackTree.minimum(); node != null; node = redBlackTree.successor(node))
+            entrySet.add(nodeToSimpleEntry(node));
+        return entrySet;
+    }
+
+    @Override
+    public Map.Entry<Long, V> firstEntry() {
+        return nodeToSimpleEntry(redBlackTree.minimum());
+    }
+
+    @Override
+    public long firstKey() {
+        return keyOf(redBlackTree.minimum());
+    }
+
+    @Override
+    public Map.Entry<Long, V> floorEntry(long key) {
+        return nodeToSimpleEntry(redBlackTree.floorNode(key, true));
+    }
+
+    @Override
+    public long floorKey(long key) {
+        return keyOf(redBlackTree.floorNode(key, true));
+    }
+
+    @Override
+    public V get(long key) {
+        return redBlackTree.search(key);
+    }
+
+    @Override
+    public ArrayList<Map.Entry<Long, V>> headMap(long toKey) {
+        return headMap(toKey, false);
+    }
+
+    @Override
+    public ArrayList<Map.Entry<Long, V>> headMap(long toKey, boolean inclusive) {
+        ArrayList<Map.Entry<Long, V>> headMapList = new ArrayList<>();
+        for (LongNode<V> node = redBlackTree.minimum(); node != null; node = redBlackTree.successor(node)) {
+            if (node.key > toKey || (node.key == toKey && !inclusive))
+                break;
+            headMapList.add(nodeToSimpleEntry(node));
+        }
+        return headMapList;
+    }
+
+    @Override
+    public Set<Long> keySet() {
+        Set<Long> keys = new LinkedHashSet<>();
+        for (LongNode<V> node = redBlackTree.minimum(); node != null; node = redBlackTree.successor(node))
+            keys.add(node.key);
+        return keys;
+    }
+
+    @Override
+    public Map.Entry<Long, V> lastEntry() {
+        return nodeToSimpleEntry(redBlackTree.maximum());
+    }
+
+    @Override
+    public long lastKey() {
+        return keyOf(redBlackTree.maximum());
+    }
+
+    @Override
+    public Map.Entry<Long, V> pollFirstEntry() {
+        LongNode<V> node = redBlackTree.minimum();
+        if (node == null)
+            return null;
+        Map.Entry<Long, V> entry = nodeToSimpleEntry(node);
+        redBlackTree.deleteNode(node);
+        return entry;
+    }
+
+    @Override
+    public Map.Entry<Long, V> pollLastEntry() {
+        LongNode<V> node = redBlackTree.maximum();
+        if (node == null)
+            return null;
+        Map.Entry<Long, V> entry = nodeToSimpleEntry(node);
+        redBlackTree.deleteNode(node);
+        return entry;
+    }
+
+    @Override
+    public V put(long key, V value) {
+        return redBlackTree.put(key, value);
+    }
+
+    @Override
+    public void putAll(Map<Long, V> map) {
+        if (map == null)
+            throw new RuntimeErrorException(new Error());
+        for (Map.Entry<Long, V> entry : map.entrySet()) {
+            if (entry.getKey() == null)
+                throw new RuntimeErrorException(new Error());
+            put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Override
+    public boolean remove(long key) {
+        return redBlackTree.delete(key);
+    }
+
+    @Override
+    public int size() {
+        return redBlackTree.getSize();
+    }
+
+    @Override
+    public Collection<V> values() {
+        Collection<V> values = new ArrayList<>(redBlackTree.getSize());
+        for (LongNode<V> node = redBlackTree.minimum(); node != null; node = redBlackTree.successor(node))
+            values.add(node.value);
+        return values;
+    }
+
+    @Override
+    public ITreeMap<Long, V> asTreeMap() {
+        return new BoxedLongTreeMap<>(this);
+    }
+}
@@ -0,0 +1,125 @@
+package eg.edu.alexu.csd.filestructure.redblacktree;
+
+import javax.management.RuntimeErrorException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+/**
+ * off-heap tree whose records live in a memory-mapped file, so reopening the file gives the tree back without a rebuild.
+ * The file starts with a small header holding the record layout and the root, size and allocation cursors,
+ * followed by the record chunks. Chunks are slices of mapped segments that start at one chunk and double up to 64 MB,
+ * so a small tree only grows the file as far as it needs while a large one keeps the number of mappings low.
+ * Nothing past the header is mapped until the first record is needed.
+ * The header is only written by {@link #force()} and {@link #close()}, a file that was not forced after its last
+ * modification may not reopen consistently.
+ */
+class MappedRedBlackTree<T extends Comparable<T>, V> extends OffHeapRedBlackTree<T, V> implements IMappedRedBlackTree<T, V> {
+    private static final int MAGIC = 0x52425431; //"RBT1"
+    private static final int HEADER_BYTES = 64;
+    private static final int MAX_SEGMENT_BYTES = 1 << 26;
+
+    private static final int H_MAGIC = 0;
+    private static final int H_KEY_WIDTH = 4;
+    private static final int H_VALUE_WIDTH = 8;
+    private static final int H_NODE_SIZE = 12;
+    private static final int H_ROOT = 16;
+    private static final int H_SIZE = 20;
+    private static final int H_NEXT = 24;
+    private static final int H_FREE_HEAD = 28;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    private final int maxChunksPerSegment;
+    private final ArrayList<MappedByteBuffer> segments = new ArrayList<>();
+    //the segment chunks are currently sliced from and the first chunk it holds, chunks are always allocated in order
+    private MappedByteBuffer segment;
+    private int segmentFirst;
+
+    MappedRedBlackTree(Path file, FixedWidthCodec<T> keyCodec, FixedWidthCodec<V> valueCodec) throws IOException {
+        super(keyCodec, valueCodec);
+        this.maxChunksPerSegment = Math.max(1, MAX_SEGMENT_BYTES / chunkBytes());
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            boolean existing = channel.size() >= HEADER_BYTES;
+            this.header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            if (existing) {
+                if (header.getInt(H_MAGIC) != MAGIC || header.getInt(H_KEY_WIDTH) != keyCodec.width()
+                        || header.getInt(H_VALUE_WIDTH) != valueCodec.width() || header.getInt(H_NODE_SIZE) != nodeSize)
+                    throw new RuntimeErrorException(new Error("file does not hold a tree with this layout"));
+                root = header.getInt(H_ROOT);
+                size = header.getInt(H_SIZE);
+                next = header.getInt(H_NEXT);
+                freeHead = header.getInt(H_FREE_HEAD);
+            } else {
+                header.putInt(H_KEY_WIDTH, keyCodec.width());
+                header.putInt(H_VALUE_WIDTH, valueCodec.width());
+                header.putInt(H_NODE_SIZE, nodeSize);
+                writeHeader();
+                header.putInt(H_MAGIC, MAGIC);
+            }
+            //map the records in use, if any, pages are only read once touched
+            if (next > 1)
+                ensureChunk(next - 1);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    ByteBuffer allocateChunk(int chunk) {
+        int bytes = chunkBytes();
+        if (segment == null || (long) (chunk - segmentFirst + 1) * bytes > segment.capacity()) {
+            //as many chunks as already mapped, so the mapped size doubles, the file grows with it
+            int count = Math.min(maxChunksPerSegment, Math.max(1, chunk));
+            try {
+                segment = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_BYTES + (long) chunk * bytes, (long) count * bytes);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            segments.add(segment);
+            segmentFirst = chunk;
+        }
+        return segment.slice((chunk - segmentFirst) * bytes, bytes).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private void writeHeader() {
+        header.putInt(H_ROOT, root);
+        header.putInt(H_SIZE, size);
+        header.putInt(H_NEXT, next);
+        header.putInt(H_FREE_HEAD, freeHead);
+    }
+
+    @Override
+    public void force() {
+        for (MappedByteBuffer mapped : segments)
+            mapped.force();
+        //the header goes last so that it never points at records that have not reached the file
+        writeHeader();
+        header.force();
+    }
+
+    @Override
+    public void close() {
+        if (!channel.isOpen())
+            return;
+        force();
+        //java cannot unmap a buffer, dropping the references lets the mappings go once the buffers are collected
+        segments.clear();
+        segment = null;
+        super.close();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
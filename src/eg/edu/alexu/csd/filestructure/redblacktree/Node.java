@@ -1,18 +1,28 @@
 package eg.edu.alexu.csd.filestructure.redblacktree;
 
 public class Node<T extends Comparable<T>,V> implements INode<T, V> {
+    /**
+     * the single black leaf shared by all trees instead of allocating two empty nodes per key.
+     */
+    private static final Node<?, ?> NIL = new Nil<>();
+
     private T key;
     private V value;
     private INode<T, V> parent;
     private INode<T, V> leftChild;
     private INode<T, V> rightChild;
     private boolean color;
+    //number of keys in the subtree rooted at this node, kept up to date by the tree
+    private int subtreeSize;
 
     Node(T key, V value) {
         this.key = key;
         this.value = value;
         this.color = Node.RED;
         this.parent = null;
+        this.leftChild = nil();
+        this.rightChild = nil();
+        this.subtreeSize = 1;
     }
     Node(){
         this.color = Node.BLACK;
@@ -87,4 +97,43 @@ public class Node<T extends Comparable<T>,V> implements INode<T, V> {
 
     @Override
     public boolean isNull() { return key == null; }
+
+    /**
+     * @return the number of keys in the subtree rooted at this node, zero for the nil leaf.
+     */
+    int getSubtreeSize() { return subtreeSize; }
+
+    void setSubtreeSize(int subtreeSize) { this.subtreeSize = subtreeSize; }
+
+    /**
+     * @return the shared nil leaf.
+     */
+    @SuppressWarnings("unchecked")
+    static <T extends Comparable<T>, V> INode<T, V> nil() { return (INode<T, V>) NIL; }
+
+    /**
+     * the nil leaf ignores every write so that it stays black, keyless and detached from any tree.
+     */
+    private static final class Nil<T extends Comparable<T>, V> extends Node<T, V> {
+        @Override
+        public void setParent(INode<T, V> parent) { }
+
+        @Override
+        public void setLeftChild(INode<T, V> leftChild) { }
+
+        @Override
+        public void setRightChild(INode<T, V> rightChild) { }
+
+        @Override
+        public void setKey(T key) { }
+
+        @Override
+        public void setValue(V value) { }
+
+        @Override
+        public void setColor(boolean color) { }
+
+        @Override
+        void setSubtreeSize(int subtreeSize) { }
+    }
 }
@@ -0,0 +1,511 @@
+package eg.edu.alexu.csd.filestructure.redblacktree;
+
+import javax.management.RuntimeErrorException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * red black tree for fixed width keys and values whose nodes live outside the java heap.
+ * Nodes are fixed size records in direct buffer chunks, addressed by int index; index 0 is the nil leaf.
+ * A record holds the left, right and parent indices, the color, then the encoded key and value.
+ * {@link #clear()} only resets the allocation cursor and keeps the chunks for reuse, {@link #close()} drops them.
+ * Kept package-private so {@link RedBlackTree} stays the only public implementation of the interface,
+ * use {@link RedBlackTrees#offHeap(FixedWidthCodec, FixedWidthCodec)} to create one.
+ */
+class OffHeapRedBlackTree<T extends Comparable<T>, V> implements IOffHeapRedBlackTree<T, V> {
+    static final int NIL = 0;
+    static final int CHUNK_SHIFT = 14;
+    static final int CHUNK_NODES = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_NODES - 1;
+
+    private static final int LEFT = 0;
+    private static final int RIGHT = 4;
+    private static final int PARENT = 8;
+    private static final int COLOR = 12;
+    private static final int KEY = 16;
+
+    private final FixedWidthCodec<T> keyCodec;
+    private final FixedWidthCodec<V> valueCodec;
+    private final int valueOffset;
+    final int nodeSize;
+
+    private ByteBuffer[] chunks = new ByteBuffer[0];
+    int root = NIL;
+    int size = 0;
+    //first record never handed out yet, and head of the chain of freed records
+    int next = 1;
+    int freeHead = NIL;
+
+    OffHeapRedBlackTree(FixedWidthCodec<T> keyCodec, FixedWidthCodec<V> valueCodec) {
+        if (keyCodec == null || valueCodec == null)
+            throw new RuntimeErrorException(new Error());
+        this.keyCodec = keyCodec;
+        this.valueCodec = valueCodec;
+        this.valueOffset = KEY + keyCodec.width();
+        //round records up to 8 bytes so that long keys and values stay aligned
+        this.nodeSize = (valueOffset + valueCodec.width() + 7) & ~7;
+    }
+
+    /**
+     * @return the number of bytes of one chunk of records.
+     */
+    final int chunkBytes() { return CHUNK_NODES * nodeSize; }
+
+    /**
+     * provide the buffer backing the given chunk of records, called the first time a chunk is needed.
+     * @param chunk index of the chunk.
+     * @return a zeroed buffer of {@link #chunkBytes()} bytes.
+     */
+    ByteBuffer allocateChunk(int chunk) {
+        return ByteBuffer.allocateDirect(chunkBytes()).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * make sure every chunk up to the one holding the given record is mapped in.
+     */
+    final void ensureChunk(int node) {
+        int chunk = node >>> CHUNK_SHIFT;
+        if (chunk < chunks.length && chunks[chunk] != null)
+            return;
+        if (chunk >= chunks.length)
+            chunks = Arrays.copyOf(chunks, Math.max(chunk + 1, chunks.length * 2));
+        for (int i = 0; i <= chunk; i++)
+            if (chunks[i] == null)
+                chunks[i] = allocateChunk(i);
+    }
+
+    @Override
+    public INode<T, V> getRoot() {
+        return new NodeView(root);
+    }
+
+    @Override
+    public boolean isEmpty() { return root == NIL; }
+
+    /**
+     * forget every record in O(1), the chunks stay allocated and get overwritten by later inserts.
+     */
+    @Override
+    public void clear() {
+        root = NIL;
+        size = 0;
+        next = 1;
+        freeHead = NIL;
+    }
+
+    /**
+     * drop every chunk at once, the tree must not be used afterwards.
+     */
+    @Override
+    public void close() {
+        clear();
+        chunks = new ByteBuffer[0];
+    }
+
+    @Override
+    public V search(T key) {
+        if (key == null)
+            throw new RuntimeErrorException(new Error());
+        int node = searchHelper(key);
+        return node == NIL ? null : value(node);
+    }
+
+    @Override
+    public boolean contains(T key) {
+        if (key == null)
+            throw new RuntimeErrorException(new Error());
+        return searchHelper(key) != NIL;
+    }
+
+    @Override
+    public void insert(T key, V value) {
+        if (key == null || value == null)
+            throw new RuntimeErrorException(new Error());
+        int x = root, y = NIL, cmp = 0;
+        //get the parent of the inserted node
+        while (x != NIL) {
+            y = x;
+            cmp = compare(key, x);
+            if (cmp < 0) {
+                x = left(x);
+            } else if (cmp > 0) {
+                x = right(x);
+            } else {
+                //change the value of the node if the key already exists
+                valueCodec.write(chunk(x), offset(x) + valueOffset, value);
+                return;
+            }
+        }
+        int node = newNode(key, value);
+        size++;
+        setParent(node, y);
+        if (y == NIL) { //empty tree
+            root = node;
+            setRed(node, false);
+            return;
+        }
+        if (cmp < 0)
+            setLeft(y, node);
+        else
+            setRight(y, node);
+        fixInsert(node);
+    }
+
+    @Override
+    public boolean delete(T key) {
+        if (key == null)
+            throw new RuntimeErrorException(new Error());
+        int z = searchHelper(key);
+        if (z == NIL)
+            return false;
+        deleteNode(z);
+        return true;
+    }
+
+    /**
+     * @return the size of the tree.
+     */
+    public int getSize() { return size; }
+
+    private ByteBuffer chunk(int node) { return chunks[node >>> CHUNK_SHIFT]; }
+
+    private int offset(int node) { return (node & CHUNK_MASK) * nodeSize; }
+
+    private int left(int node) { return chunk(node).getInt(offset(node) + LEFT); }
+
+    private int right(int node) { return chunk(node).getInt(offset(node) + RIGHT); }
+
+    private int parent(int node) { return chunk(node).getInt(offset(node) + PARENT); }
+
+    private boolean isRed(int node) { return chunk(node).getInt(offset(node) + COLOR) != 0; }
+
+    private void setLeft(int node, int child) { chunk(node).putInt(offset(node) + LEFT, child); }
+
+    private void setRight(int node, int child) { chunk(node).putInt(offset(node) + RIGHT, child); }
+
+    private void setParent(int node, int parent) { chunk(node).putInt(offset(node) + PARENT, parent); }
+
+    private void setRed(int node, boolean isRed) {
+        if (node != NIL)
+            chunk(node).putInt(offset(node) + COLOR, isRed ? 1 : 0);
+    }
+
+    private int compare(T key, int node) { return keyCodec.compare(key, chunk(node), offset(node) + KEY); }
+
+    private T key(int node) { return node == NIL ? null : keyCodec.read(chunk(node), offset(node) + KEY); }
+
+    private V value(int node) { return node == NIL ? null : valueCodec.read(chunk(node), offset(node) + valueOffset); }
+
+    /**
+     * take a record from the free list, or the next unused one.
+     * @return index of a new red node with nil children.
+     */
+    private int newNode(T key, V value) {
+        int node;
+        if (freeHead != NIL) {
+            node = freeHead;
+            freeHead = right(node);
+        } else {
+            if (next < 0)
+                throw new RuntimeErrorException(new Error("off-heap tree is full"));
+            node = next++;
+            ensureChunk(node);
+        }
+        ByteBuffer chunk = chunk(node);
+        int offset = offset(node);
+        chunk.putInt(offset + LEFT, NIL);
+        chunk.putInt(offset + RIGHT, NIL);
+        chunk.putInt(offset + COLOR, 1);
+        keyCodec.write(chunk, offset + KEY, key);
+        valueCodec.write(chunk, offset + valueOffset, value);
+        return node;
+    }
+
+    private int searchHelper(T key) {
+        int node = root;
+        while (node != NIL) {
+            int cmp = compare(key, node);
+            if (cmp < 0)
+                node = left(node);
+            else if (cmp > 0)
+                node = right(node);
+            else
+                return node;
+        }
+        return NIL;
+    }
+
+    private void deleteNode(int z) {
+        size--;
+        int x, xParent, y = z;
+        boolean yOriginalRed = isRed(y);
+        if (left(z) == NIL) {
+            x = right(z);
+            xParent = parent(z);
+            rbHandler(z, x);
+        } else if (right(z) == NIL) {
+            x = left(z);
+            xParent = parent(z);
+            rbHandler(z, x);
+        } else {
+            y = right(z);
+            while (left(y) != NIL)
+                y = left(y);
+            yOriginalRed = isRed(y);
+            x = right(y);
+            if (parent(y) == z) {
+                xParent = y;
+            } else {
+                xParent = parent(y);
+                rbHandler(y, x);
+                setRight(y, right(z));
+                setParent(right(y), y);
+            }
+            rbHandler(z, y);
+            setLeft(y, left(z));
+            setParent(left(y), y);
+            setRed(y, isRed(z));
+        }
+        //chain the record into the free list through its right index
+        setRight(z, freeHead);
+        freeHead = z;
+        if (!yOriginalRed)
+            fixDelete(x, xParent);
+    }
+
+    private void fixInsert(int z) {
+        while (isRed(parent(z))) {
+            int p = parent(z), g = parent(p);
+            if (p == right(g)) {
+                int u = left(g);
+                if (isRed(u)) {
+                    setRed(u, false);
+                    setRed(p, false);
+                    setRed(g, true);
+                    z = g;
+                } else {
+                    if (z == left(p)) {
+                        z = p;
+                        rightRotate(z);
+                        p = parent(z);
+                    }
+                    setRed(p, false);
+                    setRed(g, true);
+                    leftRotate(g);
+                }
+            } else {
+                int u = right(g);
+                if (isRed(u)) {
+                    setRed(u, false);
+                    setRed(p, false);
+                    setRed(g, true);
+                    z = g;
+                } else {
+                    if (z == right(p)) {
+                        z = p;
+                        leftRotate(z);
+                        p = parent(z);
+                    }
+                    setRed(p, false);
+                    setRed(g, true);
+                    rightRotate(g);
+                }
+            }
+        }
+        setRed(root, false);
+    }
+
+    private void fixDelete(int x, int xParent) {
+        while (x != root && !isRed(x)) {
+            if (x == left(xParent)) {
+                int s = right(xParent);
+                if (isRed(s)) {
+                    setRed(s, false);
+                    setRed(xParent, true);
+                    leftRotate(xParent);
+                    s = right(xParent);
+                }
+                if (!isRed(left(s)) && !isRed(right(s))) {
+                    setRed(s, true);
+                    x = xParent;
+                    xParent = parent(x);
+                } else {
+                    if (!isRed(right(s))) {
+                        setRed(left(s), false);
+                        setRed(s, true);
+                        rightRotate(s);
+                        s = right(xParent);
+                    }
+                    setRed(s, isRed(xParent));
+                    setRed(xParent, false);
+                    setRed(right(s), false);
+                    leftRotate(xParent);
+                    x = root;
+                }
+            } else {
+                int s = left(xParent);
+                if (isRed(s)) {
+                    setRed(s, false);
+                    setRed(xParent, true);
+                    rightRotate(xParent);
+                    s = left(xParent);
+                }
+                if (!isRed(left(s)) && !isRed(right(s))) {
+                    setRed(s, true);
+                    x = xParent;
+                    xParent = parent(x);
+                } else {
+                    if (!isRed(left(s))) {
+                        setRed(right(s), false);
+                        setRed(s, true);
+                        leftRotate(s);
+                        s = left(xParent);
+                    }
+                    setRed(s, isRed(xParent));
+                    setRed(xParent, false);
+                    setRed(left(s), false);
+                    rightRotate(xParent);
+                    x = root;
+                }
+            }
+        }
+        setRed(x, false);
+    }
+
+    /**
+     * replace the subtree rooted at u with the subtree rooted at v.
+     */
+    private void rbHandler(int u, int v) {
+        int p = parent(u);
+        if (p == NIL)
+            root = v;
+        else if (u == left(p))
+            setLeft(p, v);
+        else
+            setRight(p, v);
+        if (v != NIL)
+            setParent(v, p);
+    }
+
+    private void leftRotate(int x) {
+        int y = right(x);
+        setRight(x, left(y));
+        if (left(y) != NIL)
+            setParent(left(y), x);
+        int p = parent(x);
+        setParent(y, p);
+        if (p == NIL)
+            root = y;
+        else if (x == left(p))
+            setLeft(p, y);
+        else
+            setRight(p, y);
+        setLeft(y, x);
+        setParent(x, y);
+    }
+
+    private void rightRotate(int x) {
+        int y = left(x);
+        setLeft(x, right(y));
+        if (right(y) != NIL)
+            setParent(right(y), x);
+        int p = parent(x);
+        setParent(y, p);
+        if (p == NIL)
+            root = y;
+        else if (x == right(p))
+            setRight(p, y);
+        else
+            setLeft(p, y);
+        setRight(y, x);
+        setParent(x, y);
+    }
+
+    /**
+     * {@link INode} handle over one record, created on demand by {@link #getRoot()} and the getters.
+     * The setters write straight through to the record, and the nil leaf ignores them like the nil of {@link Node}.
+     */
+    private final class NodeView implements INode<T, V> {
+        private final int index;
+
+        NodeView(int index) {
+            this.index = index;
+        }
+
+        private int indexOf(INode<T, V> node) {
+            if (node == null)
+                return NIL;
+            //a record can only link to another record, not to a node kept on the heap
+            if (!(node instanceof OffHeapRedBlackTree<?, ?>.NodeView))
+                throw new RuntimeErrorException(new Error());
+            return ((OffHeapRedBlackTree<?, ?>.NodeView) node).index;
+        }
+
+        private INode<T, V> view(int node) {
+            return node == NIL && index == NIL ? null : new NodeView(node);
+        }
+
+        @Override
+        public void setParent(INode<T, V> parent) { if (index != NIL) OffHeapRedBlackTree.this.setParent(index, indexOf(parent)); }
+
+        @Override
+        public INode<T, V> getParent() {
+            return index == NIL || parent(index) == NIL ? null : new NodeView(parent(index));
+        }
+
+        @Override
+        public void setLeftChild(INode<T, V> leftChild) { if (index != NIL) setLeft(index, indexOf(leftChild)); }
+
+        @Override
+        public INode<T, V> getLeftChild() { return index == NIL ? null : view(left(index)); }
+
+        @Override
+        public void setRightChild(INode<T, V> rightChild) { if (index != NIL) setRight(index, indexOf(rightChild)); }
+
+        @Override
+        public INode<T, V> getRightChild() { return index == NIL ? null : view(right(index)); }
+
+        @Override
+        public T getKey() { return key(index); }
+
+        @Override
+        public void setKey(T key) {
+            if (index == NIL)
+                return;
+            //the codec has no encoding for null
+            if (key == null)
+                throw new RuntimeErrorException(new Error());
+            keyCodec.write(chunk(index), offset(index) + KEY, key);
+        }
+
+        @Override
+        public V getValue() { return value(index); }
+
+        @Override
+        public void setValue(V value) {
+            if (index == NIL)
+                return;
+            if (value == null)
+                throw new RuntimeErrorException(new Error());
+            valueCodec.write(chunk(index), offset(index) + valueOffset, value);
+        }
+
+        @Override
+        public boolean getColor() { return index != NIL && isRed(index); }
+
+        @Override
+        public void setColor(boolean color) { if (index != NIL) setRed(index, color); }
+
+        @Override
+        public boolean isNull() { return index == NIL; }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof OffHeapRedBlackTree<?, ?>.NodeView && ((OffHeapRedBlackTree<?, ?>.NodeView) o).index == index;
+        }
+
+        @Override
+        public int hashCode() { return index; }
+    }
+}
@@ -0,0 +1,401 @@
+package eg.edu.alexu.csd.filestructure.redblacktree;
+
+import javax.management.RuntimeErrorException;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * thread safe red black tree whose readers never lock, validating per node versions hand over hand instead.
+ * A reader notes the version of a node, reads the link to the child, notes the version of the child and then checks that
+ * the version of the node did not move; a writer makes every node it relinks odd before touching it and even again once
+ * the rotation is done, so a reader either walks links that were all in place at once or starts over from the root.
+ * Writers lock only the nodes they work on. An insert balances on the way down (top down, splitting every node with two
+ * red children it passes), so it never climbs back up and only holds the locks of the last four nodes of its path,
+ * taken hand over hand from the root; inserts in different subtrees run at the same time.
+ * Replacing the value of an existing key and deleting lock that node only: a delete leaves the node in the tree with a
+ * null value, and once deleted nodes outnumber the live ones the tree is rebuilt from the live keys, the only step that
+ * waits for every writer. Readers skip deleted nodes on the way, and {@link #getRoot()} rebuilds first if there are any,
+ * so the nodes it hands out only hold keys that are in the tree.
+ * Kept package-private so {@link RedBlackTree} stays the only public implementation of the interface,
+ * use {@link RedBlackTrees#optimisticTree()} to create one.
+ */
+class OptimisticRedBlackTree<T extends Comparable<T>, V> implements IRedBlackTree<T, V> {
+    //a reader restarted this many times in a row locks its way down hand over hand instead of starting over again
+    private static final int MAX_OPTIMISTIC_ATTEMPTS = 64;
+    //deleted nodes are only swept out past this count, so small trees are not rebuilt on every other delete
+    private static final int MIN_PURGE = 64;
+
+    private final VersionedNode<T, V> nil = VersionedNode.nil();
+    //the root is the right child of the head, so replacing it is relinking a node like any other
+    private final VersionedNode<T, V> head = new VersionedNode<>(null, null);
+    //shared by inserts and deletes, held exclusively only to rebuild or clear the tree
+    private final ReentrantReadWriteLock structure = new ReentrantReadWriteLock();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicInteger deleted = new AtomicInteger();
+
+    OptimisticRedBlackTree() {
+        head.left = nil;
+        head.right = nil;
+    }
+
+    @Override
+    public INode<T, V> getRoot() {
+        //deleted keys are swept out first, so a caller walking the nodes only meets keys that are in the tree
+        if (deleted.get() > 0)
+            purge(true);
+        return head.right;
+    }
+
+    @Override
+    public boolean isEmpty() { return size.get() == 0; }
+
+    /**
+     * @return the size of the tree.
+     */
+    public int getSize() { return size.get(); }
+
+    @Override
+    public void clear() {
+        structure.writeLock().lock();
+        try {
+            replaceRoot(nil);
+            size.set(0);
+            deleted.set(0);
+        } finally {
+            structure.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public V search(T key) {
+        VersionedNode<T, V> node = find(key);
+        return node == null ? null : node.value;
+    }
+
+    @Override
+    public boolean contains(T key) {
+        VersionedNode<T, V> node = find(key);
+        return node != null && !node.isDeleted();
+    }
+
+    @Override
+    public void insert(T key, V value) {
+        if (key == null || value == null)
+            throw new RuntimeErrorException(new Error());
+        structure.readLock().lock();
+        try {
+            VersionedNode<T, V> node = find(key);
+            if (node != null)
+                store(node, value);
+            else
+                insertTopDown(key, value);
+        } finally {
+            structure.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean delete(T key) {
+        if (key == null)
+            throw new RuntimeErrorException(new Error());
+        structure.readLock().lock();
+        try {
+            VersionedNode<T, V> node = find(key);
+            if (node == null)
+                return false;
+            node.lock.lock();
+            try {
+                if (node.isDeleted())
+                    return false;
+                node.value = null;
+                size.decrementAndGet();
+                deleted.incrementAndGet();
+            } finally {
+                node.lock.unlock();
+            }
+        } finally {
+            structure.readLock().unlock();
+        }
+        if (needsPurge())
+            purge(false);
+        return true;
+    }
+
+    private int compare(T a, T b) { return a.compareTo(b); }
+
+    /**
+     * set the value of a node found in the tree, counting it again if it was deleted.
+     */
+    private void store(VersionedNode<T, V> node, V value) {
+        node.lock.lock();
+        try {
+            if (node.isDeleted()) {
+                size.incrementAndGet();
+                deleted.decrementAndGet();
+            }
+            node.value = value;
+        } finally {
+            node.lock.unlock();
+        }
+    }
+
+    /**
+     * search without locking, validating each link hand over hand.
+     * @return the node with the given key, deleted or not, or null if it was not in the tree at some point during the call.
+     */
+    private VersionedNode<T, V> find(T key) {
+        if (key == null)
+            throw new RuntimeErrorException(new Error());
+        restart:
+        for (int attempt = 0; attempt < MAX_OPTIMISTIC_ATTEMPTS; attempt++) {
+            VersionedNode<T, V> parent = head;
+            long version = parent.version;
+            if ((version & 1) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            VersionedNode<T, V> node = parent.right;
+            while (true) {
+                long nodeVersion = node.version;
+                //the link is only trusted if the parent did not change while the child was being looked at
+                if (parent.version != version || (nodeVersion & 1) != 0) {
+                    Thread.onSpinWait();
+                    continue restart;
+                }
+                if (node == nil)
+                    return null;
+                int cmp = compare(key, node.key);
+                if (cmp == 0)
+                    return node;
+                parent = node;
+                version = nodeVersion;
+                node = cmp < 0 ? node.left : node.right;
+            }
+        }
+        return findLocked(key);
+    }
+
+    /**
+     * search locking hand over hand, links of a node only change while its lock is held.
+     */
+    private VersionedNode<T, V> findLocked(T key) {
+        VersionedNode<T, V> parent = head;
+        parent.lock.lock();
+        try {
+            VersionedNode<T, V> node = parent.right;
+            while (node != nil) {
+                int cmp = compare(key, node.key);
+                if (cmp == 0)
+                    return node;
+                node.lock.lock();
+                parent.lock.unlock();
+                parent = node;
+                node = cmp < 0 ? node.left : node.right;
+            }
+            return null;
+        } finally {
+            parent.lock.unlock();
+        }
+    }
+
+    /**
+     * make the node odd before the first change to its links.
+     */
+    private void touch(VersionedNode<T, V> node) {
+        node.version = node.version + 1;
+    }
+
+    /**
+     * make the node even again, letting readers trust its links.
+     */
+    private void publish(VersionedNode<T, V> node) {
+        node.version = node.version + 1;
+    }
+
+    private boolean isRed(VersionedNode<T, V> node) {
+        return node != nil && node.color == INode.RED;
+    }
+
+    /**
+     * set the child of a locked parent on the given side, the parent of the root is left null as in {@link RedBlackTree}.
+     */
+    private void link(VersionedNode<T, V> parent, boolean right, VersionedNode<T, V> child) {
+        if (right)
+            parent.right = child;
+        else
+            parent.left = child;
+        if (child != nil)
+            child.parent = parent == head ? null : parent;
+    }
+
+    /**
+     * insert a key that was missing, locking the path from the root hand over hand.
+     * The path list holds the locked nodes, each the parent of the next, and never more than the four a rotation needs.
+     */
+    private void insertTopDown(T key, V value) {
+        ArrayList<VersionedNode<T, V>> path = new ArrayList<>(6);
+        head.lock.lock();
+        path.add(head);
+        try {
+            boolean right = true;
+            while (true) {
+                VersionedNode<T, V> parent = path.get(path.size() - 1);
+                VersionedNode<T, V> node = right ? parent.right : parent.left;
+                if (node == nil) {
+                    node = new VersionedNode<>(key, value);
+                    node.lock.lock();
+                    path.add(node);
+                    touch(parent);
+                    link(parent, right, node);
+                    publish(parent);
+                    size.incrementAndGet();
+                    if (parent == head)
+                        node.color = INode.BLACK;
+                    balance(path);
+                    return;
+                }
+                node.lock.lock();
+                path.add(node);
+                int cmp = compare(key, node.key);
+                if (cmp == 0) {
+                    //inserted by another writer since the key was looked up
+                    store(node, value);
+                    return;
+                }
+                if (isRed(node.left) && isRed(node.right))
+                    split(node, parent == head);
+                balance(path);
+                while (path.size() > 4)
+                    path.remove(0).lock.unlock();
+                right = cmp > 0;
+            }
+        } finally {
+            for (VersionedNode<T, V> node : path)
+                node.lock.unlock();
+        }
+    }
+
+    /**
+     * color flip a black node with two red children, pushing the red up into its parent.
+     * The children are locked for the flip since writers below read their colors.
+     */
+    private void split(VersionedNode<T, V> node, boolean isRoot) {
+        VersionedNode<T, V> left = node.left, right = node.right;
+        left.lock.lock();
+        right.lock.lock();
+        try {
+            left.color = INode.BLACK;
+            right.color = INode.BLACK;
+            //the root stays black, nothing is above it to take the red
+            node.color = isRoot ? INode.BLACK : INode.RED;
+        } finally {
+            right.lock.unlock();
+            left.lock.unlock();
+        }
+    }
+
+    /**
+     * fix a red node under a red parent at the end of the path with one or two rotations at the grandparent.
+     * The grandparent is black and its other child is black, since every node with two red children was split on the
+     * way down and only nodes holding the locks can change their colors; the rotated nodes that leave the path are
+     * unlocked, leaving the path ending at the same node.
+     */
+    private void balance(ArrayList<VersionedNode<T, V>> path) {
+        int n = path.size();
+        VersionedNode<T, V> node = path.get(n - 1), parent = path.get(n - 2);
+        if (!isRed(node) || !isRed(parent))
+            return;
+        VersionedNode<T, V> grand = path.get(n - 3), top = path.get(n - 4);
+        boolean side = grand.right == parent, topSide = top.right == grand;
+        touch(top);
+        touch(grand);
+        touch(parent);
+        if ((parent.right == node) == side) {
+            link(grand, side, side ? parent.left : parent.right);
+            link(parent, !side, grand);
+            link(top, topSide, parent);
+            parent.color = INode.BLACK;
+            grand.color = INode.RED;
+            publish(top);
+            publish(grand);
+            publish(parent);
+            path.remove(n - 3);
+        } else {
+            touch(node);
+            link(parent, !side, side ? node.right : node.left);
+            link(grand, side, side ? node.left : node.right);
+            link(node, side, parent);
+            link(node, !side, grand);
+            link(top, topSide, node);
+            node.color = INode.BLACK;
+            grand.color = INode.RED;
+            publish(top);
+            publish(grand);
+            publish(parent);
+            publish(node);
+            path.remove(n - 2);
+            path.remove(n - 3);
+            parent.lock.unlock();
+        }
+        grand.lock.unlock();
+    }
+
+    private boolean needsPurge() {
+        int dead = deleted.get();
+        return dead > 0 && (size.get() == 0 || (dead >= MIN_PURGE && dead > size.get()));
+    }
+
+    /**
+     * rebuild the tree from its live keys with fresh nodes, so readers still walking the old nodes see them unchanged.
+     * @param always rebuild if any key is deleted, not only once the deleted keys outnumber the live ones.
+     */
+    private void purge(boolean always) {
+        structure.writeLock().lock();
+        try {
+            if (always ? deleted.get() == 0 : !needsPurge())
+                return;
+            int live = size.get();
+            ArrayList<VersionedNode<T, V>> nodes = new ArrayList<>(live);
+            collect(head.right, nodes);
+            //the deepest level is the only one that may be partially filled, coloring it red keeps the black heights equal
+            int redLevel = 0;
+            for (int m = live - 1; m >= 0; m = m / 2 - 1)
+                redLevel++;
+            replaceRoot(build(nodes, 0, 0, live - 1, redLevel));
+            deleted.set(0);
+        } finally {
+            structure.writeLock().unlock();
+        }
+    }
+
+    private void collect(VersionedNode<T, V> node, ArrayList<VersionedNode<T, V>> nodes) {
+        for (; node != nil; node = node.right) {
+            collect(node.left, nodes);
+            if (!node.isDeleted())
+                nodes.add(node);
+        }
+    }
+
+    private VersionedNode<T, V> build(ArrayList<VersionedNode<T, V>> nodes, int level, int lo, int hi, int redLevel) {
+        if (hi < lo)
+            return nil;
+        int mid = (lo + hi) >>> 1;
+        VersionedNode<T, V> node = new VersionedNode<>(nodes.get(mid).key, nodes.get(mid).value);
+        node.color = level == redLevel ? INode.RED : INode.BLACK;
+        link(node, false, build(nodes, level + 1, lo, mid - 1, redLevel));
+        link(node, true, build(nodes, level + 1, mid + 1, hi, redLevel));
+        return node;
+    }
+
+    private void replaceRoot(VersionedNode<T, V> root) {
+        head.lock.lock();
+        try {
+            touch(head);
+            link(head, true, root);
+            publish(head);
+        } finally {
+            head.lock.unlock();
+        }
+    }
+}
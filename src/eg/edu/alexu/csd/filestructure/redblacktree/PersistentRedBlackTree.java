@@ -0,0 +1,425 @@
+package eg.edu.alexu.csd.filestructure.redblacktree;
+
+import javax.management.RuntimeErrorException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Map;
+
+/**
+ * immutable red black tree where every update returns a new version and leaves the old one readable.
+ * Insert and delete copy only the nodes on the path from the root to the changed key (plus the few siblings
+ * recolored while rebalancing), every other node is shared between the versions, so keeping a snapshot costs O(1).
+ * The balancing follows Okasaki's insertion and Kahrs' deletion for functional red black trees.
+ * Instances are immutable and safe to read from any number of threads.
+ * @param <T> type of the keys.
+ * @param <V> type of the values.
+ */
+public final class PersistentRedBlackTree<T extends Comparable<T>, V> {
+    private final PersistentNode<T, V> root;
+    private final int size;
+    private final long version;
+    private final Comparator<? super T> comparator;
+
+    /**
+     * create an empty tree ordered by the natural ordering of the keys, at version 0.
+     */
+    public PersistentRedBlackTree() {
+        this(null);
+    }
+
+    /**
+     * create an empty tree at version 0.
+     * @param comparator the ordering of the keys, or null for the natural ordering.
+     */
+    public PersistentRedBlackTree(Comparator<? super T> comparator) {
+        this(null, 0, 0, comparator);
+    }
+
+    private PersistentRedBlackTree(PersistentNode<T, V> root, int size, long version, Comparator<? super T> comparator) {
+        this.root = root;
+        this.size = size;
+        this.version = version;
+        this.comparator = comparator;
+    }
+
+    /**
+     * @return the number of updates that led to this version, 0 for an empty tree created by a constructor.
+     */
+    public long getVersion() { return version; }
+
+    /**
+     * @return the number of keys in this version.
+     */
+    public int getSize() { return size; }
+
+    public boolean isEmpty() { return root == null; }
+
+    /**
+     * @return the comparator ordering the keys, or null for the natural ordering.
+     */
+    public Comparator<? super T> comparator() { return comparator; }
+
+    /**
+     * @param key the key searched for.
+     * @return the value of the key in this version or null if it is not there.
+     */
+    public V search(T key) {
+        PersistentNode<T, V> node = searchNode(key);
+        return node == null ? null : node.value;
+    }
+
+    public boolean contains(T key) { return searchNode(key) != null; }
+
+    /**
+     * @param key the lower bound.
+     * @return the mapping of the least key greater than or equal to the given key, or null if there is none.
+     */
+    public Map.Entry<T, V> ceilingEntry(T key) {
+        if (key == null)
+            throw new RuntimeErrorException(new Error());
+        PersistentNode<T, V> node = root, best = null;
+        while (node != null) {
+            int cmp = compare(key, node.key);
+            if (cmp == 0)
+                return entry(node);
+            if (cmp < 0) {
+                best = node;
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+        return entry(best);
+    }
+
+    /**
+     * @param key the upper bound.
+     * @return the mapping of the greatest key less than or equal to the given key, or null if there is none.
+     */
+    public Map.Entry<T, V> floorEntry(T key) {
+        if (key == null)
+            throw new RuntimeErrorException(new Error());
+        PersistentNode<T, V> node = root, best = null;
+        while (node != null) {
+            int cmp = compare(key, node.key);
+            if (cmp == 0)
+                return entry(node);
+            if (cmp > 0) {
+                best = node;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return entry(best);
+    }
+
+    /**
+     * @return the mapping of the least key, or null if the tree is empty.
+     */
+    public Map.Entry<T, V> firstEntry() {
+        PersistentNode<T, V> node = root;
+        while (node != null && node.left != null)
+            node = node.left;
+        return entry(node);
+    }
+
+    /**
+     * @return the mapping of the greatest key, or null if the tree is empty.
+     */
+    public Map.Entry<T, V> lastEntry() {
+        PersistentNode<T, V> node = root;
+        while (node != null && node.right != null)
+            node = node.right;
+        return entry(node);
+    }
+
+    /**
+     * @return the mappings of this version in ascending key order.
+     */
+    public ArrayList<Map.Entry<T, V>> entries() {
+        ArrayList<Map.Entry<T, V>> entries = new ArrayList<>(size);
+        collect(root, null, false, entries);
+        return entries;
+    }
+
+    /**
+     * @param toKey the upper bound.
+     * @param inclusive whether the mapping of toKey itself is included.
+     * @return the mappings whose keys are less than (or equal to, if inclusive) toKey in ascending key order.
+     */
+    public ArrayList<Map.Entry<T, V>> headEntries(T toKey, boolean inclusive) {
+        if (toKey == null)
+            throw new RuntimeErrorException(new Error());
+        ArrayList<Map.Entry<T, V>> entries = new ArrayList<>();
+        collect(root, toKey, inclusive, entries);
+        return entries;
+    }
+
+    /**
+     * @param value the value searched for.
+     * @return true if some key of this version maps to the given value.
+     */
+    public boolean containsValue(V value) {
+        if (value == null)
+            throw new RuntimeErrorException(new Error());
+        return containsValue(root, value);
+    }
+
+    /**
+     * add the mappings of the subtree in order, stopping at the first key past toKey when it is not null.
+     * @return false once a key past toKey was reached.
+     */
+    private boolean collect(PersistentNode<T, V> node, T toKey, boolean inclusive, ArrayList<Map.Entry<T, V>> entries) {
+        if (node == null)
+            return true;
+        if (!collect(node.left, toKey, inclusive, entries))
+            return false;
+        if (toKey != null) {
+            int cmp = compare(node.key, toKey);
+            if (cmp > 0 || (cmp == 0 && !inclusive))
+                return false;
+        }
+        entries.add(entry(node));
+        return collect(node.right, toKey, inclusive, entries);
+    }
+
+    private boolean containsValue(PersistentNode<T, V> node, V value) {
+        for (; node != null; node = node.right)
+            if (node.value.equals(value) || containsValue(node.left, value))
+                return true;
+        return false;
+    }
+
+    /**
+     * @param key the key to insert, or whose value to replace.
+     * @param value the value of the key.
+     * @return the next version holding the given mapping, this version is left unchanged.
+     */
+    public PersistentRedBlackTree<T, V> insert(T key, V value) {
+        if (key == null || value == null)
+            throw new RuntimeErrorException(new Error());
+        int newSize = contains(key) ? size : size + 1;
+        return new PersistentRedBlackTree<>(blacken(insert(root, key, value)), newSize, version + 1, comparator);
+    }
+
+    /**
+     * insert every mapping of the given map as a single update, so the next version is only one version later.
+     * @param map the mappings to insert, none of their keys or values may be null.
+     * @return the next version holding the mappings, or this version if the map is empty.
+     */
+    public PersistentRedBlackTree<T, V> insertAll(Map<? extends T, ? extends V> map) {
+        if (map == null)
+            throw new RuntimeErrorException(new Error());
+        if (map.isEmpty())
+            return this;
+        PersistentNode<T, V> next = root;
+        int newSize = size;
+        for (Map.Entry<? extends T, ? extends V> entry : map.entrySet()) {
+            T key = entry.getKey();
+            V value = entry.getValue();
+            if (key == null || value == null)
+                throw new RuntimeErrorException(new Error());
+            if (searchNode(next, key) == null)
+                newSize++;
+            next = blacken(insert(next, key, value));
+        }
+        return new PersistentRedBlackTree<>(next, newSize, version + 1, comparator);
+    }
+
+    /**
+     * @param key the key to remove.
+     * @return the next version without the key, or this version if the key is not in it.
+     */
+    public PersistentRedBlackTree<T, V> delete(T key) {
+        //the deletion rebalances on the way up assuming a black node was removed, so it must only run for present keys
+        if (!contains(key))
+            return this;
+        return new PersistentRedBlackTree<>(blacken(delete(root, key)), size - 1, version + 1, comparator);
+    }
+
+    /**
+     * @return the next version without any key, or this version if it is already empty.
+     */
+    public PersistentRedBlackTree<T, V> clear() {
+        if (size == 0)
+            return this;
+        return new PersistentRedBlackTree<T, V>(null, 0, version + 1, comparator);
+    }
+
+    private PersistentNode<T, V> searchNode(T key) {
+        if (key == null)
+            throw new RuntimeErrorException(new Error());
+        return searchNode(root, key);
+    }
+
+    private PersistentNode<T, V> searchNode(PersistentNode<T, V> node, T key) {
+        while (node != null) {
+            int cmp = compare(key, node.key);
+            if (cmp < 0)
+                node = node.left;
+            else if (cmp > 0)
+                node = node.right;
+            else
+                return node;
+        }
+        return null;
+    }
+
+    private int compare(T a, T b) {
+        return comparator == null ? a.compareTo(b) : comparator.compare(a, b);
+    }
+
+    private Map.Entry<T, V> entry(PersistentNode<T, V> node) {
+        return node == null ? null : new AbstractMap.SimpleImmutableEntry<>(node.key, node.value);
+    }
+
+    private PersistentNode<T, V> insert(PersistentNode<T, V> node, T key, V value) {
+        if (node == null)
+            return red(null, key, value, null);
+        int cmp = compare(key, node.key);
+        if (cmp == 0)
+            return new PersistentNode<>(node.color, node.left, key, value, node.right);
+        if (node.color == INode.BLACK) {
+            if (cmp < 0)
+                return balance(insert(node.left, key, value), node.key, node.value, node.right);
+            return balance(node.left, node.key, node.value, insert(node.right, key, value));
+        }
+        if (cmp < 0)
+            return red(insert(node.left, key, value), node.key, node.value, node.right);
+        return red(node.left, node.key, node.value, insert(node.right, key, value));
+    }
+
+    private PersistentNode<T, V> delete(PersistentNode<T, V> node, T key) {
+        int cmp = compare(key, node.key);
+        if (cmp < 0) {
+            if (isBlack(node.left))
+                return balanceLeft(delete(node.left, key), node.key, node.value, node.right);
+            return red(delete(node.left, key), node.key, node.value, node.right);
+        }
+        if (cmp > 0) {
+            if (isBlack(node.right))
+                return balanceRight(node.left, node.key, node.value, delete(node.right, key));
+            return red(node.left, node.key, node.value, delete(node.right, key));
+        }
+        return append(node.left, node.right);
+    }
+
+    /**
+     * rebuild a black node whose subtrees may have a red child with a red child, or two red children.
+     */
+    private static <T extends Comparable<T>, V> PersistentNode<T, V> balance(PersistentNode<T, V> left, T key, V value, PersistentNode<T, V> right) {
+        if (isRed(left) && isRed(right))
+            return red(blacken(left), key, value, blacken(right));
+        if (isRed(left)) {
+            if (isRed(left.left))
+                return red(blacken(left.left), left.key, left.value, black(left.right, key, value, right));
+            if (isRed(left.right))
+                return red(black(left.left, left.key, left.value, left.right.left), left.right.key, left.right.value,
+                        black(left.right.right, key, value, right));
+        }
+        if (isRed(right)) {
+            if (isRed(right.right))
+                return red(black(left, key, value, right.left), right.key, right.value, blacken(right.right));
+            if (isRed(right.left))
+                return red(black(left, key, value, right.left.left), right.left.key, right.left.value,
+                        black(right.left.right, right.key, right.value, right.right));
+        }
+        return black(left, key, value, right);
+    }
+
+    /**
+     * rebalance after the left subtree lost one black node.
+     */
+    private static <T extends Comparable<T>, V> PersistentNode<T, V> balanceLeft(PersistentNode<T, V> left, T key, V value, PersistentNode<T, V> right) {
+        if (isRed(left))
+            return red(blacken(left), key, value, right);
+        if (isBlack(right))
+            return balance(left, key, value, redden(right));
+        //the right sibling is red with a black left child
+        PersistentNode<T, V> inner = right.left;
+        return red(black(left, key, value, inner.left), inner.key, inner.value,
+                balance(inner.right, right.key, right.value, redden(right.right)));
+    }
+
+    /**
+     * rebalance after the right subtree lost one black node.
+     */
+    private static <T extends Comparable<T>, V> PersistentNode<T, V> balanceRight(PersistentNode<T, V> left, T key, V value, PersistentNode<T, V> right) {
+        if (isRed(right))
+            return red(left, key, value, blacken(right));
+        if (isBlack(left))
+            return balance(redden(left), key, value, right);
+        //the left sibling is red with a black right child
+        PersistentNode<T, V> inner = left.right;
+        return red(balance(redden(left.left), left.key, left.value, inner.left), inner.key, inner.value,
+                black(inner.right, key, value, right));
+    }
+
+    /**
+     * merge the two subtrees of a deleted node, all keys of left being less than all keys of right.
+     */
+    private static <T extends Comparable<T>, V> PersistentNode<T, V> append(PersistentNode<T, V> left, PersistentNode<T, V> right) {
+        if (left == null)
+            return right;
+        if (right == null)
+            return left;
+        if (isRed(left) && isRed(right)) {
+            PersistentNode<T, V> middle = append(left.right, right.left);
+            if (isRed(middle))
+                return red(red(left.left, left.key, left.value, middle.left), middle.key, middle.value,
+                        red(middle.right, right.key, right.value, right.right));
+            return red(left.left, left.key, left.value, red(middle, right.key, right.value, right.right));
+        }
+        if (isBlack(left) && isBlack(right)) {
+            PersistentNode<T, V> middle = append(left.right, right.left);
+            if (isRed(middle))
+                return red(black(left.left, left.key, left.value, middle.left), middle.key, middle.value,
+                        black(middle.right, right.key, right.value, right.right));
+            return balanceLeft(left.left, left.key, left.value, black(middle, right.key, right.value, right.right));
+        }
+        if (isRed(right))
+            return red(append(left, right.left), right.key, right.value, right.right);
+        return red(left.left, left.key, left.value, append(left.right, right));
+    }
+
+    private static boolean isRed(PersistentNode<?, ?> node) { return node != null && node.color == INode.RED; }
+
+    private static boolean isBlack(PersistentNode<?, ?> node) { return node != null && node.color == INode.BLACK; }
+
+    private static <T extends Comparable<T>, V> PersistentNode<T, V> red(PersistentNode<T, V> left, T key, V value, PersistentNode<T, V> right) {
+        return new PersistentNode<>(INode.RED, left, key, value, right);
+    }
+
+    private static <T extends Comparable<T>, V> PersistentNode<T, V> black(PersistentNode<T, V> left, T key, V value, PersistentNode<T, V> right) {
+        return new PersistentNode<>(INode.BLACK, left, key, value, right);
+    }
+
+    private static <T extends Comparable<T>, V> PersistentNode<T, V> blacken(PersistentNode<T, V> node) {
+        return node == null || node.color == INode.BLACK ? node : black(node.left, node.key, node.value, node.right);
+    }
+
+    private static <T extends Comparable<T>, V> PersistentNode<T, V> redden(PersistentNode<T, V> node) {
+        return red(node.left, node.key, node.value, node.right);
+    }
+
+    /**
+     * immutable node shared by every version that did not change it, null stands for the leaves.
+     */
+    private static final class PersistentNode<T extends Comparable<T>, V> {
+        private final boolean color;
+        private final PersistentNode<T, V> left;
+        private final T key;
+        private final V value;
+        private final PersistentNode<T, V> right;
+
+        PersistentNode(boolean color, PersistentNode<T, V> left, T key, V value, PersistentNode<T, V> right) {
+            this.color = color;
+            this.left = left;
+            this.key = key;
+            this.value = value;
+            this.right = right;
+        }
+    }
+}
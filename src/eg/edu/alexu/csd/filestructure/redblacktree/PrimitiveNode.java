@@ -0,0 +1,31 @@
+package eg.edu.alexu.csd.filestructure.redblacktree;
+
+/**
+ * links, color and value of a node keyed by a primitive, the key itself is declared by {@link LongNode} and
+ * {@link IntNode} so it stays unboxed.
+ * @param <N> type of the node itself, so the links need no casts.
+ * @param <V> type of the value.
+ */
+abstract class PrimitiveNode<N extends PrimitiveNode<N, V>, V> {
+    V value;
+    N parent;
+    N leftChild;
+    N rightChild;
+    boolean color;
+
+    PrimitiveNode(V value, N nil) {
+        this.value = value;
+        this.color = INode.RED;
+        this.leftChild = nil;
+        this.rightChild = nil;
+    }
+
+    PrimitiveNode() {
+        this.color = INode.BLACK;
+    }
+
+    /**
+     * @return true for the shared nil leaf of the node type.
+     */
+    abstract boolean isNull();
+}
@@ -0,0 +1,333 @@
+package eg.edu.alexu.csd.filestructure.redblacktree;
+
+/**
+ * the part of {@link LongRedBlackTree} and {@link IntRedBlackTree} that never looks at a key: the size, walking the
+ * nodes in order, linking a new node in and unlinking one, and the rotations and recoloring that keep the tree balanced.
+ * The subclasses only hold the descents, which compare the raw keys with the primitive operators.
+ * @param <N> type of the nodes.
+ * @param <V> type of the values.
+ */
+abstract class PrimitiveRedBlackTree<N extends PrimitiveNode<N, V>, V> {
+    private final N nil;
+    N root;
+    private int size = 0;
+
+    PrimitiveRedBlackTree(N nil) {
+        this.nil = nil;
+        this.root = nil;
+    }
+
+    public boolean isEmpty() { return root.isNull(); }
+
+    public void clear() {
+        size = 0;
+        root = nil;
+    }
+
+    public int getSize() { return this.size; }
+
+    /**
+     * link a new node below the parent the descent stopped at and restore the red black properties.
+     * @param parent the last node of the descent, or null if the tree is empty.
+     * @param node the new red node.
+     * @param left whether the node goes to the left of the parent.
+     */
+    void attach(N parent, N node, boolean left) {
+        size++;
+        node.parent = parent;
+        if (parent == null) { //empty tree
+            root = node;
+            root.color = INode.BLACK;
+            return;
+        }
+        if (left)
+            parent.leftChild = node;
+        else
+            parent.rightChild = node;
+        //check if the parent is the root (black node), then no need to fix colors
+        if (parent.parent != null)
+            fixInsert(node);
+    }
+
+    /**
+     * @return the node with the minimum key or null if the tree is empty.
+     */
+    N minimum() {
+        if (root.isNull())
+            return null;
+        N node = root;
+        while (!node.leftChild.isNull())
+            node = node.leftChild;
+        return node;
+    }
+
+    /**
+     * @return the node with the maximum key or null if the tree is empty.
+     */
+    N maximum() {
+        if (root.isNull())
+            return null;
+        N node = root;
+        while (!node.rightChild.isNull())
+            node = node.rightChild;
+        return node;
+    }
+
+    /**
+     * @param x a node in the tree
+     * @return the successor of x or null if x holds the maximum key
+     */
+    N successor(N x) {
+        if (!x.rightChild.isNull()) {
+            x = x.rightChild;
+            while (!x.leftChild.isNull())
+                x = x.leftChild;
+            return x;
+        }
+        N y = x.parent;
+        while (y != null && x == y.rightChild) {
+            x = y;
+            y = y.parent;
+        }
+        return y;
+    }
+
+    /**
+     * @param x a node in the tree
+     * @return the predecessor of x or null if x holds the minimum key
+     */
+    N predecessor(N x) {
+        if (!x.leftChild.isNull()) {
+            x = x.leftChild;
+            while (!x.rightChild.isNull())
+                x = x.rightChild;
+            return x;
+        }
+        N y = x.parent;
+        while (y != null && x == y.leftChild) {
+            x = y;
+            y = y.parent;
+        }
+        return y;
+    }
+
+    /**
+     * checks if the tree has a node with the given value.
+     * @param value the value to be checked.
+     * @return true if a node with the given value is found, otherwise returns false.
+     */
+    boolean containsValue(V value) {
+        for (N node = minimum(); node != null; node = successor(node))
+            if (node.value.equals(value))
+                return true;
+        return false;
+    }
+
+    /**
+     * unlink the given node from the tree and restore the red black properties.
+     * @param z a node in the tree.
+     */
+    void deleteNode(N z) {
+        size--;
+        if (size == 0) {
+            root = nil;
+            return;
+        }
+        N x, xParent, y = z;
+        boolean yOriginalColor = y.color;
+        if (z.leftChild.isNull()) {
+            x = z.rightChild;
+            xParent = z.parent;
+            rbHandler(z, x);
+        } else if (z.rightChild.isNull()) {
+            x = z.leftChild;
+            xParent = z.parent;
+            rbHandler(z, x);
+        } else {
+            y = z.rightChild;
+            while (!y.leftChild.isNull())
+                y = y.leftChild;
+            yOriginalColor = y.color;
+            x = y.rightChild;
+            if (z == y.parent) {
+                xParent = y;
+            } else {
+                xParent = y.parent;
+                rbHandler(y, x);
+                y.rightChild = z.rightChild;
+                y.rightChild.parent = y;
+            }
+            rbHandler(z, y);
+            y.leftChild = z.leftChild;
+            y.leftChild.parent = y;
+            y.color = z.color;
+        }
+        if (yOriginalColor == INode.BLACK)
+            fixDelete(x, xParent);
+    }
+
+    /**
+     * fix the tree after insertion of a node recoloring & rotations.
+     * @param z the node to be fixed.
+     */
+    private void fixInsert(N z) {
+        N u; //uncle of the inserted z
+        while (z.parent != null && z.parent.color == INode.RED) {
+            N g = z.parent.parent;
+            if (z.parent == g.rightChild) {
+                u = g.leftChild;
+                if (u.color == INode.RED) {
+                    u.color = INode.BLACK;
+                    z.parent.color = INode.BLACK;
+                    g.color = INode.RED;
+                    z = g;
+                } else {
+                    if (z == z.parent.leftChild) {
+                        z = z.parent;
+                        rightRotate(z);
+                    }
+                    z.parent.color = INode.BLACK;
+                    z.parent.parent.color = INode.RED;
+                    leftRotate(z.parent.parent);
+                }
+            } else {
+                u = g.rightChild;
+                if (u.color == INode.RED) {
+                    u.color = INode.BLACK;
+                    z.parent.color = INode.BLACK;
+                    g.color = INode.RED;
+                    z = g;
+                } else {
+                    if (z == z.parent.rightChild) {
+                        z = z.parent;
+                        leftRotate(z);
+                    }
+                    z.parent.color = INode.BLACK;
+                    z.parent.parent.color = INode.RED;
+                    rightRotate(z.parent.parent);
+                }
+            }
+        }
+        root.color = INode.BLACK;
+    }
+
+    /**
+     * fix property(5) that states that all paths have same number of black nodes.
+     * @param x the node to be fixed.
+     * @param parent the parent of x, needed when x is the nil leaf.
+     */
+    private void fixDelete(N x, N parent) {
+        N s; //sibling
+        while (x != root && x.color == INode.BLACK) {
+            if (x == parent.leftChild) {
+                s = parent.rightChild;
+                if (s.color == INode.RED) {
+                    s.color = INode.BLACK;
+                    parent.color = INode.RED;
+                    leftRotate(parent);
+                    s = parent.rightChild;
+                }
+                if (s.leftChild.color == INode.BLACK && s.rightChild.color == INode.BLACK) {
+                    s.color = INode.RED;
+                    x = parent;
+                    parent = x.parent;
+                } else {
+                    if (s.rightChild.color == INode.BLACK) {
+                        s.leftChild.color = INode.BLACK;
+                        s.color = INode.RED;
+                        rightRotate(s);
+                        s = parent.rightChild;
+                    }
+                    s.color = parent.color;
+                    parent.color = INode.BLACK;
+                    s.rightChild.color = INode.BLACK;
+                    leftRotate(parent);
+                    x = root;
+                }
+            } else {
+                s = parent.leftChild;
+                if (s.color == INode.RED) {
+                    s.color = INode.BLACK;
+                    parent.color = INode.RED;
+                    rightRotate(parent);
+                    s = parent.leftChild;
+                }
+                if (s.leftChild.color == INode.BLACK && s.rightChild.color == INode.BLACK) {
+                    s.color = INode.RED;
+                    x = parent;
+                    parent = x.parent;
+                } else {
+                    if (s.leftChild.color == INode.BLACK) {
+                        s.rightChild.color = INode.BLACK;
+                        s.color = INode.RED;
+                        leftRotate(s);
+                        s = parent.leftChild;
+                    }
+                    s.color = parent.color;
+                    parent.color = INode.BLACK;
+                    s.leftChild.color = INode.BLACK;
+                    rightRotate(parent);
+                    x = root;
+                }
+            }
+        }
+        if (!x.isNull())
+            x.color = INode.BLACK;
+    }
+
+    /**
+     * replace the subtree rooted at u with the subtree rooted at v.
+     * @param u the node to be replaced.
+     * @param v the replacing node, possibly the nil leaf.
+     */
+    private void rbHandler(N u, N v) {
+        if (u.parent == null)
+            root = v;
+        else if (u == u.parent.leftChild)
+            u.parent.leftChild = v;
+        else
+            u.parent.rightChild = v;
+        if (!v.isNull())
+            v.parent = u.parent;
+    }
+
+    /**
+     * left rotate around the given node.
+     * @param x the node to rotate around.
+     */
+    private void leftRotate(N x) {
+        N y = x.rightChild;
+        x.rightChild = y.leftChild;
+        if (!y.leftChild.isNull())
+            y.leftChild.parent = x;
+        y.parent = x.parent;
+        if (x.parent == null)
+            this.root = y;
+        else if (x == x.parent.leftChild)
+            x.parent.leftChild = y;
+        else
+            x.parent.rightChild = y;
+        y.leftChild = x;
+        x.parent = y;
+    }
+
+    /**
+     * right rotate around the given node.
+     * @param x the node to rotate around.
+     */
+    private void rightRotate(N x) {
+        N y = x.leftChild;
+        x.leftChild = y.rightChild;
+        if (!y.rightChild.isNull())
+            y.rightChild.parent = x;
+        y.parent = x.parent;
+        if (x.parent == null)
+            this.root = y;
+        else if (x == x.parent.rightChild)
+            x.parent.rightChild = y;
+        else
+            x.parent.leftChild = y;
+        y.rightChild = x;
+        x.parent = y;
+    }
+}
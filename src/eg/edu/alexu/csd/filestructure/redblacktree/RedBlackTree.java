@@ -1,11 +1,46 @@
 package eg.edu.alexu.csd.filestructure.redblacktree;
 
 import javax.management.RuntimeErrorException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 public class RedBlackTree<T extends Comparable<T>,V> implements IRedBlackTree<T,V> {
-    private INode<T, V> root;
-    private boolean found;
+    //set operations on fewer nodes than this run their two halves on the current thread
+    private static final int PARALLEL_THRESHOLD = 1 << 13;
+    //a red black tree with fewer than 2^31 keys is at most 62 levels deep, a longer walk followed links torn by a concurrent writer
+    private static final int MAX_HEIGHT = 2 * Integer.SIZE;
+
+    private INode<T, V> root = Node.nil();
+    //the nodes with the least and the greatest key, null when the tree is empty; rotations never change which nodes they are
+    private INode<T, V> leftmost, rightmost;
     private int size = 0;
+    //the comparison of the key with the node the last call to descend stopped at
+    private int lastCompare;
+    //the black height of the subtree the last join returned, counting its root as black
+    private int joinedHeight;
+    private final Comparator<? super T> comparator;
+
+    public RedBlackTree() {
+        this(null);
+    }
+
+    /**
+     * create a tree ordered by the given comparator instead of the natural ordering of the keys.
+     * With a comparator the keys' own compareTo is never called; the keys still have to be Comparable because
+     * {@link INode} and {@link IRedBlackTree} declare the bound.
+     * @param comparator the ordering of the keys, or null for the natural ordering.
+     */
+    public RedBlackTree(Comparator<? super T> comparator) {
+        this.comparator = comparator;
+    }
 
     @Override
     public INode<T, V> getRoot() {
@@ -15,12 +50,13 @@ public class RedBlackTree<T extends Comparable<T>,V> implements IRedBlackTree<T,
     }
 
     @Override
-    public boolean isEmpty() { return root == null || root.getKey() == null; }
+    public boolean isEmpty() { return root == null || root.isNull(); }
 
     @Override
     public void clear() {
         size = 0;
-        root = new Node<>();
+        root = Node.nil();
+        leftmost = rightmost = null;
     }
 
     @Override
@@ -46,73 +82,448 @@ public class RedBlackTree<T extends Comparable<T>,V> implements IRedBlackTree<T,
     @Override
     public void insert(T key, V value) {
         if (key != null && value != null) {
-            INode<T, V> node = new Node<>(key, value);
-            node.setLeftChild(new Node<>());
-            node.setRightChild(new Node<>());
             //empty tree
-            if (root == null || root.getKey() == null) {
-                root = node;
+            if (root == null || root.isNull()) {
+                root = new Node<>(key, value);
                 root.setColor(Node.BLACK);
+                leftmost = rightmost = root;
                 size++;
                 return;
             }
             //non-empty tree
             INode<T, V> x = this.root;
             INode<T, V> y = null;
-            //get the parent of the inserted node
-            while (x.getKey() != null) {
-                y = x;
-                if (node.getKey().compareTo(x.getKey()) < 0) {
-                    x = x.getLeftChild();
-                } else if (node.getKey().compareTo(x.getKey()) > 0) {
-                    x = x.getRightChild();
-                } else {
-                    //change the value of the node if the key already exists
-                    x.setValue(value);
-                    //no need to fix
-                    return;
+            int cmp = 0;
+            //get the parent of the inserted node, comparing against each node once
+            if (comparator == null) {
+                while (!x.isNull()) {
+                    y = x;
+                    cmp = key.compareTo(x.getKey());
+                    if (cmp < 0) {
+                        x = x.getLeftChild();
+                    } else if (cmp > 0) {
+                        x = x.getRightChild();
+                    } else {
+                        //change the value of the node if the key already exists
+                        x.setValue(value);
+                        //no need to fix
+                        return;
+                    }
                 }
-            }
-            size++;
-            //check the parent to insert the node as right or left child
-            node.setParent(y);
-            if (y != null ) {
-                if (node.getKey().compareTo(y.getKey()) < 0) {
-                    y.setLeftChild(node);
-                } else {
-                    y.setRightChild(node);
+            } else {
+                while (!x.isNull()) {
+                    y = x;
+                    cmp = comparator.compare(key, x.getKey());
+                    if (cmp < 0) {
+                        x = x.getLeftChild();
+                    } else if (cmp > 0) {
+                        x = x.getRightChild();
+                    } else {
+                        x.setValue(value);
+                        return;
+                    }
                 }
             }
-            //check if the parent is the root (black node), then no need to fix colors
-            if (node.getParent() == null || node.getParent().getParent() == null)
-                return;
-            fixInsert(node);
+            attach(y, cmp, key, value);
         }else {
             throw new RuntimeErrorException(new Error());
         }
     }
 
+    /**
+     * link a new node under the given leaf parent, update the subtree sizes on the way up and fix the colors.
+     * @param y the parent of the new node.
+     * @param cmp the result of comparing the key with the key of y, tells whether the node goes left or right.
+     * @return the new node.
+     */
+    private INode<T, V> attach(INode<T, V> y, int cmp, T key, V value) {
+        size++;
+        INode<T, V> node = new Node<>(key, value);
+        node.setParent(y);
+        if (cmp < 0) {
+            y.setLeftChild(node);
+            //a new least key can only hang to the left of the old least one
+            if (y == leftmost)
+                leftmost = node;
+        } else {
+            y.setRightChild(node);
+            if (y == rightmost)
+                rightmost = node;
+        }
+        for (INode<T, V> p = y; p != null; p = p.getParent())
+            setSubtreeSize(p, subtreeSize(p) + 1);
+        //check if the parent is the root (black node), then no need to fix colors
+        if (y.getParent() != null)
+            fixInsert(node);
+        return node;
+    }
+
+    /**
+     * insert a batch of unsorted entries, replacing the values of keys already in the tree.
+     * The batch is sorted first (in parallel when it is large) and the later of two entries with equal keys wins.
+     * Small batches are merged in ascending order, each descent starting from the last inserted node instead of the root;
+     * a batch that is large relative to the tree is merged with the in-order contents and the tree rebuilt in linear time.
+     * @param batch the entries to insert, none of their keys or values may be null.
+     * @return how many keys were new and how many already in the tree had their values replaced.
+     */
+    @SuppressWarnings("unchecked")
+    public InsertAllResult insertAll(Collection<? extends Map.Entry<? extends T, ? extends V>> batch) {
+        if (batch == null)
+            throw new RuntimeErrorException(new Error());
+        Map.Entry<? extends T, ? extends V>[] sorted = batch.toArray(
+                (Map.Entry<? extends T, ? extends V>[]) new Map.Entry<?, ?>[0]);
+        for (Map.Entry<? extends T, ? extends V> entry : sorted)
+            if (entry == null || entry.getKey() == null || entry.getValue() == null)
+                throw new RuntimeErrorException(new Error());
+        //parallelSort falls back to a sequential sort for small arrays, and it is stable so equal keys keep the batch order
+        Arrays.parallelSort(sorted, (a, b) -> compare(a.getKey(), b.getKey()));
+        //keep only the last entry of every run of equal keys
+        int count = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (count > 0 && compare(sorted[count - 1].getKey(), sorted[i].getKey()) == 0)
+                count--;
+            sorted[count++] = sorted[i];
+        }
+        int oldSize = size;
+        //one descent per key costs about log2(size) comparisons, rebuilding costs one step per key of both
+        int logSize = 32 - Integer.numberOfLeadingZeros(size);
+        if ((long) count * logSize >= size) {
+            int updated = mergeAndRebuild(sorted, count);
+            return new InsertAllResult(count - updated, updated);
+        }
+        INode<T, V> finger = null;
+        for (int i = 0; i < count; i++) {
+            T key = sorted[i].getKey();
+            INode<T, V> start = root;
+            if (finger != null) {
+                //the keys come in ascending order, so climb from the last node until the key is below the upper bound of the subtree
+                start = finger;
+                for (INode<T, V> p = start.getParent(); p != null; p = start.getParent()) {
+                    if (start == p.getLeftChild() && compare(key, p.getKey()) < 0)
+                        break;
+                    start = p;
+                }
+            }
+            finger = insertBelow(start, key, sorted[i].getValue());
+        }
+        int inserted = size - oldSize;
+        return new InsertAllResult(inserted, count - inserted);
+    }
+
+    /**
+     * insert the key in the given subtree, which must be the one the key belongs to.
+     * @return the node holding the key.
+     */
+    private INode<T, V> insertBelow(INode<T, V> x, T key, V value) {
+        INode<T, V> y = null;
+        int cmp = 0;
+        while (!x.isNull()) {
+            y = x;
+            cmp = compare(key, x.getKey());
+            if (cmp < 0) {
+                x = x.getLeftChild();
+            } else if (cmp > 0) {
+                x = x.getRightChild();
+            } else {
+                x.setValue(value);
+                return x;
+            }
+        }
+        if (y == null) {
+            root = new Node<>(key, value);
+            root.setColor(Node.BLACK);
+            leftmost = rightmost = root;
+            size++;
+            return root;
+        }
+        return attach(y, cmp, key, value);
+    }
+
+    /**
+     * walk down once towards the given key, leaving the last comparison made in lastCompare.
+     * @return the node holding the key, otherwise the node a new node for it would hang under, or null if the tree is empty.
+     */
+    private INode<T, V> descend(T key) {
+        if (key == null)
+            throw new RuntimeErrorException(new Error());
+        INode<T, V> node = root, parent = null;
+        int cmp = 0;
+        for (int depth = 1; !node.isNull(); checkDepth(++depth)) {
+            parent = node;
+            cmp = compare(key, node.getKey());
+            if (cmp == 0)
+                break;
+            node = cmp < 0 ? node.getLeftChild() : node.getRightChild();
+        }
+        lastCompare = cmp;
+        return parent;
+    }
+
+    /**
+     * @param node the result of {@link #descend(Comparable)}.
+     * @param cmp the comparison it left in lastCompare.
+     * @return whether the node holds the key.
+     */
+    private static boolean holds(INode<?, ?> node, int cmp) {
+        return node != null && cmp == 0;
+    }
+
+    /**
+     * add a key that is not in the tree under the node {@link #descend(Comparable)} stopped at.
+     * @param cmp the comparison of the key with that node, as left in lastCompare.
+     */
+    private void insertAt(INode<T, V> parent, int cmp, T key, V value) {
+        if (parent == null) {
+            root = new Node<>(key, value);
+            root.setColor(Node.BLACK);
+            leftmost = rightmost = root;
+            size++;
+        } else {
+            attach(parent, cmp, key, value);
+        }
+    }
+
+    /**
+     * associate the value with the key in one descent.
+     * @return the previous value of the key, or null if it was not in the tree.
+     */
+    public V put(T key, V value) {
+        if (value == null)
+            throw new RuntimeErrorException(new Error());
+        INode<T, V> node = descend(key);
+        int cmp = lastCompare;
+        if (!holds(node, cmp)) {
+            insertAt(node, cmp, key, value);
+            return null;
+        }
+        V old = node.getValue();
+        node.setValue(value);
+        return old;
+    }
+
+    /**
+     * insert the key only if it is not in the tree yet, in one descent.
+     * @return the value of the key if it was already in the tree, otherwise null.
+     */
+    public V putIfAbsent(T key, V value) {
+        if (value == null)
+            throw new RuntimeErrorException(new Error());
+        INode<T, V> node = descend(key);
+        int cmp = lastCompare;
+        if (holds(node, cmp))
+            return node.getValue();
+        insertAt(node, cmp, key, value);
+        return null;
+    }
+
+    /**
+     * replace the value of the key only if it is in the tree.
+     * @return the previous value, or null if the key was not in the tree.
+     */
+    public V replace(T key, V value) {
+        if (value == null)
+            throw new RuntimeErrorException(new Error());
+        INode<T, V> node = descend(key);
+        if (!holds(node, lastCompare))
+            return null;
+        V old = node.getValue();
+        node.setValue(value);
+        return old;
+    }
+
+    /**
+     * replace the value of the key only if it currently maps to the expected value.
+     * @return true if the value was replaced.
+     */
+    public boolean replace(T key, V oldValue, V newValue) {
+        if (newValue == null)
+            throw new RuntimeErrorException(new Error());
+        INode<T, V> node = descend(key);
+        if (!holds(node, lastCompare) || !Objects.equals(node.getValue(), oldValue))
+            return false;
+        node.setValue(newValue);
+        return true;
+    }
+
+    /**
+     * compute a new value for the key from its current value or null, removing the key when the result is null.
+     * The node or the place for it is found in a single descent, so the function must not change the tree.
+     * @return the new value, or null if the key is not in the tree afterwards.
+     */
+    public V compute(T key, BiFunction<? super T, ? super V, ? extends V> remapping) {
+        if (remapping == null)
+            throw new RuntimeErrorException(new Error());
+        INode<T, V> node = descend(key);
+        int cmp = lastCompare;
+        boolean present = holds(node, cmp);
+        return settle(node, cmp, key, remapping.apply(key, present ? node.getValue() : null));
+    }
+
+    /**
+     * compute a value for the key only if it is not in the tree, leaving the tree unchanged when the result is null.
+     * @return the current value of the key, or the computed one.
+     */
+    public V computeIfAbsent(T key, Function<? super T, ? extends V> mapping) {
+        if (mapping == null)
+            throw new RuntimeErrorException(new Error());
+        INode<T, V> node = descend(key);
+        int cmp = lastCompare;
+        if (holds(node, cmp))
+            return node.getValue();
+        V value = mapping.apply(key);
+        if (value != null)
+            insertAt(node, cmp, key, value);
+        return value;
+    }
+
+    /**
+     * compute a new value for the key only if it is in the tree, removing it when the result is null.
+     * @return the new value, or null if the key is not in the tree afterwards.
+     */
+    public V computeIfPresent(T key, BiFunction<? super T, ? super V, ? extends V> remapping) {
+        if (remapping == null)
+            throw new RuntimeErrorException(new Error());
+        INode<T, V> node = descend(key);
+        if (!holds(node, lastCompare))
+            return null;
+        return settle(node, 0, key, remapping.apply(key, node.getValue()));
+    }
+
+    /**
+     * insert the value if the key is not in the tree, otherwise combine it with the current value,
+     * removing the key when the combination is null.
+     * @return the new value, or null if the key is not in the tree afterwards.
+     */
+    public V merge(T key, V value, BiFunction<? super V, ? super V, ? extends V> remapping) {
+        if (value == null || remapping == null)
+            throw new RuntimeErrorException(new Error());
+        INode<T, V> node = descend(key);
+        int cmp = lastCompare;
+        boolean present = holds(node, cmp);
+        return settle(node, cmp, key, present ? remapping.apply(node.getValue(), value) : value);
+    }
+
+    /**
+     * store the result of a remapping at the place found by {@link #descend(Comparable)}.
+     * @param cmp the comparison it left in lastCompare, taken before the remapping ran.
+     */
+    private V settle(INode<T, V> node, int cmp, T key, V value) {
+        boolean present = holds(node, cmp);
+        if (value == null) {
+            if (present)
+                deleteNode(node);
+        } else if (present) {
+            node.setValue(value);
+        } else {
+            insertAt(node, cmp, key, value);
+        }
+        return value;
+    }
+
+    /**
+     * merge the in-order contents of the tree with the first count sorted entries and rebuild the tree from the result.
+     * @return the number of batch keys that were already in the tree.
+     */
+    @SuppressWarnings("unchecked")
+    private int mergeAndRebuild(Map.Entry<? extends T, ? extends V>[] sorted, int count) {
+        T[] oldKeys = (T[]) new Comparable<?>[size];
+        V[] oldValues = (V[]) new Object[size];
+        collect(root, oldKeys, oldValues, 0);
+        T[] keys = (T[]) new Comparable<?>[size + count];
+        V[] values = (V[]) new Object[size + count];
+        int i = 0, j = 0, n = 0, updated = 0;
+        while (i < oldKeys.length && j < count) {
+            int cmp = compare(oldKeys[i], sorted[j].getKey());
+            if (cmp < 0) {
+                keys[n] = oldKeys[i];
+                values[n++] = oldValues[i++];
+            } else {
+                if (cmp == 0) {
+                    updated++;
+                    i++;
+                }
+                keys[n] = sorted[j].getKey();
+                values[n++] = sorted[j++].getValue();
+            }
+        }
+        for (; i < oldKeys.length; i++, n++) {
+            keys[n] = oldKeys[i];
+            values[n] = oldValues[i];
+        }
+        for (; j < count; j++, n++) {
+            keys[n] = sorted[j].getKey();
+            values[n] = sorted[j].getValue();
+        }
+        buildFromSorted(Arrays.copyOf(keys, n), Arrays.copyOf(values, n));
+        return updated;
+    }
+
+    /**
+     * copy the keys and values of the given subtree in order into the arrays starting at index.
+     * @return the index after the last copied entry.
+     */
+    private int collect(INode<T, V> node, T[] keys, V[] values, int index) {
+        if (node.isNull())
+            return index;
+        index = collect(node.getLeftChild(), keys, values, index);
+        keys[index] = node.getKey();
+        values[index++] = node.getValue();
+        return collect(node.getRightChild(), keys, values, index);
+    }
+
     /**
      * search for the node with given key in the given subtree.
      * @param node the root of the subtree to be searched.
      * @param key the key searched for.
-     * @return the node with the key searched for or nil if not found.
+     * @return the node with the key searched for or null if not found.
      */
     public INode<T, V> searchHelper(INode<T, V> node, T key) {
-        if (node == null || node.getKey() == null)
-            return null;
-        if (key.compareTo(node.getKey()) == 0)
-            return node;
-        if (key.compareTo(node.getKey()) < 0)
-            return searchHelper(node.getLeftChild(), key);
-        return searchHelper(node.getRightChild(), key);
+        int depth = 0;
+        if (comparator == null) {
+            while (node != null && !node.isNull()) {
+                checkDepth(++depth);
+                int cmp = key.compareTo(node.getKey());
+                if (cmp < 0)
+                    node = node.getLeftChild();
+                else if (cmp > 0)
+                    node = node.getRightChild();
+                else
+                    return node;
+            }
+        } else {
+            while (node != null && !node.isNull()) {
+                checkDepth(++depth);
+                int cmp = comparator.compare(key, node.getKey());
+                if (cmp < 0)
+                    node = node.getLeftChild();
+                else if (cmp > 0)
+                    node = node.getRightChild();
+                else
+                    return node;
+            }
+        }
+        return null;
     }
 
+    /**
+     * compare two keys with the comparator of the tree, or their natural ordering if it has none.
+     * @return negative, zero or positive as the first key is less than, equal to or greater than the second.
+     */
+    int compare(T key1, T key2) {
+        return comparator == null ? key1.compareTo(key2) : comparator.compare(key1, key2);
+    }
+
+    /**
+     * @return the comparator ordering the keys, or null if they use their natural ordering.
+     */
+    public Comparator<? super T> comparator() { return comparator; }
+
     /**
      * fix the tree after insertion of a node recoloring & rotations.
      * @param z the node to be fixed.
+     * @return true if the recoloring reached the root, so blackening it made the tree one black level taller.
      */
-    private void fixInsert(INode<T, V> z) {
+    private boolean fixInsert(INode<T, V> z) {
         INode<T, V> u ; //uncle of the inserted z
         //fix while z and its parent are red
         while (z.getParent().getColor() == Node.RED) {
@@ -161,7 +572,9 @@ public class RedBlackTree<T extends Comparable<T>,V> implements IRedBlackTree<T,
                 break;
             }
         }
+        boolean taller = root.getColor() == Node.RED;
         root.setColor(Node.BLACK);
+        return taller;
     }
 
     @Override
@@ -173,31 +586,50 @@ public class RedBlackTree<T extends Comparable<T>,V> implements IRedBlackTree<T,
         //if node is not found, return false
         if (z == null)
             return false;
-        //otherwise, decrement the size by 1 and delete z
+        deleteNode(z);
+        return true;
+    }
+
+    /**
+     * unlink a node of the tree without searching for it first.
+     * @param z the node to be deleted.
+     */
+    void deleteNode(INode<T, V> z) {
+        //decrement the size by 1 and delete z
         size--;
-        //if z is the root, make the root null and return true
+        //if z is the root, make the root null and return
         if (size == 0) {
-            root = new Node<>();
-            return true;
+            root = Node.nil();
+            leftmost = rightmost = null;
+            return;
         }
+        //the least and greatest nodes have at most one child, so their neighbours are found before z is unlinked
+        if (z == leftmost)
+            leftmost = successor(z);
+        if (z == rightmost)
+            rightmost = predecessor(z);
 
-        INode<T, V> x, y;
+        //x may be the shared nil leaf, which has no parent of its own, so its parent is tracked separately
+        INode<T, V> x, xParent, y;
         y = z;
         boolean yOriginalColor = y.getColor();
         //if z has one child
-        if (z.getLeftChild().getKey() == null){ //if z doesn't have left child, replace z with its right child
+        if (z.getLeftChild().isNull()){ //if z doesn't have left child, replace z with its right child
             x = z.getRightChild();
+            xParent = z.getParent();
             rbHandler(z, z.getRightChild());
-        } else if (z.getRightChild().getKey() == null) { //if z doesn't have right child, replace z with its left child
+        } else if (z.getRightChild().isNull()) { //if z doesn't have right child, replace z with its left child
             x = z.getLeftChild();
+            xParent = z.getParent();
             rbHandler(z, z.getLeftChild());
         } else { //if z has two children, get z's successor
             y = successor(z);
             yOriginalColor = y.getColor();
             x = y.getRightChild();
             if (z == y.getParent()) { //if z is parent of y, set x parent as y
-                x.setParent(y);
+                xParent = y;
             } else { //replace y with its right child
+                xParent = y.getParent();
                 rbHandler(y, y.getRightChild());
                 y.setRightChild(z.getRightChild());
                 y.getRightChild().setParent(y);
@@ -207,78 +639,85 @@ public class RedBlackTree<T extends Comparable<T>,V> implements IRedBlackTree<T,
             y.setLeftChild(z.getLeftChild());
             y.getLeftChild().setParent(y);
             y.setColor(z.getColor());
+            //y takes over the subtree of z, the walk below accounts for the node that left it
+            setSubtreeSize(y, subtreeSize(z));
         }
+        //every node from the parent of the unlinked position up to the root lost one key
+        for (INode<T, V> p = xParent; p != null; p = p.getParent())
+            setSubtreeSize(p, subtreeSize(p) - 1);
         if (yOriginalColor == INode.BLACK) //if the original color was black, fix
-            fixDelete(x);
-        return true;
+            fixDelete(x, xParent);
     }
 
     /**
      * fix property(5) that states that all paths have same number of black nodes.
      * recoloring & rotations.
      * @param x the node to be fixed.
+     * @param parent the parent of x, needed when x is the nil leaf.
      */
-    private void fixDelete(INode<T, V> x){
+    private void fixDelete(INode<T, V> x, INode<T, V> parent){
         INode<T, V> s; //sibling
         //iterate until x is not root and its color is black
         while (x != root && x.getColor() == INode.BLACK) {
-            if (x == x.getParent().getLeftChild()) { //if x is left child
-                s = x.getParent().getRightChild();
+            if (x == parent.getLeftChild()) { //if x is left child
+                s = parent.getRightChild();
                 if (s.getColor() == INode.RED) { //case 1 : s is red
                     //make s red, make parent black, rotate left around parent, make s right again
                     s.setColor(INode.BLACK);
-                    x.getParent().setColor(INode.RED);
-                    caseLeftRight(x.getParent());
-                    s = x.getParent().getRightChild();
+                    parent.setColor(INode.RED);
+                    caseLeftRight(parent);
+                    s = parent.getRightChild();
                 }
-                if (s.getKey() != null && s.getLeftChild().getColor() == INode.BLACK
+                if (!s.isNull() && s.getLeftChild().getColor() == INode.BLACK
                         && s.getRightChild().getColor() == INode.BLACK) { //case 2 : s is black and both its children are black
                     //make s red
                     s.setColor(INode.RED);
-                    x = x.getParent();
+                    x = parent;
+                    parent = x.getParent();
                 } else {
-                    if (s.getKey() != null && s.getRightChild().getColor() == INode.BLACK){ //case 3 : s is black and its right child is black
+                    if (!s.isNull() && s.getRightChild().getColor() == INode.BLACK){ //case 3 : s is black and its right child is black
                         //make s red and its left child black, rotate right around s, make s right again
                         s.getLeftChild().setColor(INode.BLACK);
                         s.setColor(INode.RED);
                         caseRightRight(s);
-                        s = x.getParent().getRightChild();
+                        s = parent.getRightChild();
                     }
                     //case 4 : s is black and its left child is black
                     //make s color as parent's color, make parent black, make right child of s black, rotate left around the parent, start from root again
-                    if (s.getKey() != null) {
-                        s.setColor(x.getParent().getColor());
-                        x.getParent().setColor(INode.BLACK);
+                    if (!s.isNull()) {
+                        s.setColor(parent.getColor());
+                        parent.setColor(INode.BLACK);
                         s.getRightChild().setColor(INode.BLACK);
-                        caseLeftRight(x.getParent());
+                        caseLeftRight(parent);
                     }
                     x = root;
                 }
             } else {
                 //if node is right child
-                s = x.getParent().getLeftChild();
+                s = parent.getLeftChild();
                 if (s.getColor() == INode.RED) {
                     s.setColor(INode.BLACK);
-                    x.getParent().setColor(INode.RED);
-                    caseRightRight(x.getParent());
-                    s = x.getParent().getLeftChild();
+                    parent.setColor(INode.RED);
+                    caseRightRight(parent);
+                    s = parent.getLeftChild();
                 }
-                if (s.getKey() != null && s.getLeftChild().getColor() == INode.BLACK
+                if (!s.isNull() && s.getLeftChild().getColor() == INode.BLACK
                         && s.getRightChild().getColor() == INode.BLACK) {
                     s.setColor(INode.RED);
-                    x = x.getParent();
+                    x = parent;
+                    parent = x.getParent();
                 } else {
-                    if (s.getKey() != null && s.getLeftChild().getColor() == INode.BLACK) {
+                    if (!s.isNull() && s.getLeftChild().getColor() == INode.BLACK) {
                         s.getRightChild().setColor(INode.BLACK);
                         s.setColor(INode.RED);
                         caseLeftRight(s);
-                        s = x.getParent().getLeftChild();
+                        s = parent.getLeftChild();
                     }
-                    if (s.getKey() != null) {
-                        s.setColor(x.getParent().getColor());
-                        x.getParent().setColor(INode.BLACK);
+                    if (!s.isNull()) {
+                        s.setColor(parent.getColor());
+                        parent.setColor(INode.BLACK);
                         s.getLeftChild().setColor(INode.BLACK);
-                        caseRightRight(x.getParent());
+                        caseRightRight(parent);
                     }
                     x = root;
                 }
@@ -306,7 +745,7 @@ public class RedBlackTree<T extends Comparable<T>,V> implements IRedBlackTree<T,
     private void caseLeftRight(INode<T, V> x) {
         INode<T, V> y = x.getRightChild();
         x.setRightChild(y.getLeftChild());
-        if (y.getLeftChild().getKey() != null)
+        if (!y.getLeftChild().isNull())
             y.getLeftChild().setParent(x);
         y.setParent(x.getParent());
         if (x.getParent() == null)
@@ -317,12 +756,14 @@ public class RedBlackTree<T extends Comparable<T>,V> implements IRedBlackTree<T,
             x.getParent().setRightChild(y);
         y.setLeftChild(x);
         x.setParent(y);
+        setSubtreeSize(y, subtreeSize(x));
+        updateSubtreeSize(x);
     }
 
     private void caseRightRight(INode<T, V> x) {
         INode<T, V> y = x.getLeftChild();
         x.setLeftChild(y.getRightChild());
-        if (y.getRightChild().getKey() != null)
+        if (!y.getRightChild().isNull())
             y.getRightChild().setParent(x);
         y.setParent(x.getParent());
         if (x.getParent() == null)
@@ -333,6 +774,8 @@ public class RedBlackTree<T extends Comparable<T>,V> implements IRedBlackTree<T,
             x.getParent().setLeftChild(y);
         y.setRightChild(x);
         x.setParent(y);
+        setSubtreeSize(y, subtreeSize(x));
+        updateSubtreeSize(x);
     }
 
     /**
@@ -341,11 +784,68 @@ public class RedBlackTree<T extends Comparable<T>,V> implements IRedBlackTree<T,
      * @return the minimum node.
      */
     public INode<T, V> minimum(INode<T, V> node) {
-        while (node != null && node.getLeftChild().getKey() != null)
+        for (int depth = 1; node != null && !node.getLeftChild().isNull(); checkDepth(++depth))
             node = node.getLeftChild();
         return node;
     }
 
+    /**
+     * get the node with the least key greater than (or equal to, if inclusive) the given key in one descent.
+     * @param key the lower bound.
+     * @param inclusive whether a node with the given key itself qualifies.
+     * @return the ceiling node or null if there is none.
+     */
+    public INode<T, V> ceilingNode(T key, boolean inclusive) {
+        if (key == null)
+            throw new RuntimeErrorException(new Error());
+        INode<T, V> node = root, best = null;
+        for (int depth = 1; !node.isNull(); checkDepth(++depth)) {
+            int cmp = compare(key, node.getKey());
+            if (cmp < 0 || (inclusive && cmp == 0)) {
+                best = node;
+                if (cmp == 0)
+                    return node;
+                node = node.getLeftChild();
+            } else {
+                node = node.getRightChild();
+            }
+        }
+        return best;
+    }
+
+    /**
+     * get the node with the greatest key less than (or equal to, if inclusive) the given key in one descent.
+     * @param key the upper bound.
+     * @param inclusive whether a node with the given key itself qualifies.
+     * @return the floor node or null if there is none.
+     */
+    public INode<T, V> floorNode(T key, boolean inclusive) {
+        if (key == null)
+            throw new RuntimeErrorException(new Error());
+        INode<T, V> node = root, best = null;
+        for (int depth = 1; !node.isNull(); checkDepth(++depth)) {
+            int cmp = compare(key, node.getKey());
+            if (cmp > 0 || (inclusive && cmp == 0)) {
+                best = node;
+                if (cmp == 0)
+                    return node;
+                node = node.getRightChild();
+            } else {
+                node = node.getLeftChild();
+            }
+        }
+        return best;
+    }
+
+    /**
+     * guard the loops walking the tree, so that a reader racing with a writer fails instead of spinning in a cycle of links.
+     * @param depth the number of nodes visited so far.
+     */
+    private static void checkDepth(int depth) {
+        if (depth > MAX_HEIGHT)
+            throw new RuntimeErrorException(new Error());
+    }
+
     /**
      * left rotate around the given node.
      * @param x the node to rotate around.
@@ -355,7 +855,7 @@ public class RedBlackTree<T extends Comparable<T>,V> implements IRedBlackTree<T,
         //make the left child of y the right child of x
         x.setRightChild(y.getLeftChild());
         //if y has a left child (not nil), make x its parent
-        if (y.getLeftChild().getKey() != null)
+        if (!y.getLeftChild().isNull())
             y.getLeftChild().setParent(x);
         //make the parent of x the parent of y
         y.setParent(x.getParent());
@@ -369,6 +869,8 @@ public class RedBlackTree<T extends Comparable<T>,V> implements IRedBlackTree<T,
         //switch roles of parent & child between x & y
         y.setLeftChild(x);
         x.setParent(y);
+        setSubtreeSize(y, subtreeSize(x));
+        updateSubtreeSize(x);
     }
 
     /**
@@ -380,7 +882,7 @@ public class RedBlackTree<T extends Comparable<T>,V> implements IRedBlackTree<T,
         //make the right child of y the left child of x
         x.setLeftChild(y.getRightChild());
         //if y has a right child (not nil), make x its parent
-        if (y.getRightChild().getKey() != null) {
+        if (!y.getRightChild().isNull()) {
             y.getRightChild().setParent(x);
         }
         //make the parent of x the parent of y
@@ -395,6 +897,8 @@ public class RedBlackTree<T extends Comparable<T>,V> implements IRedBlackTree<T,
         //switch roles of parent & child between x & y
         y.setRightChild(x);
         x.setParent(y);
+        setSubtreeSize(y, subtreeSize(x));
+        updateSubtreeSize(x);
     }
 
     /**
@@ -402,7 +906,7 @@ public class RedBlackTree<T extends Comparable<T>,V> implements IRedBlackTree<T,
      * @param node the root of the subtree to be traversed.
      */
     private void inorderTraversal(INode<T, V> node) {
-        if (node.getKey() == null) {
+        if (node.isNull()) {
             System.out.println("nil");
             return;
         }
@@ -424,25 +928,19 @@ public class RedBlackTree<T extends Comparable<T>,V> implements IRedBlackTree<T,
      * @return true if a node with the given value is found, otherwise returns false.
      */
     public boolean containsValue(V value) {
-        found = false;
-        searchByValueHelper(this.root, value);
-        return found;
+        //walk the keys in order through the parent links rather than recursing
+        for (INode<T, V> node = leftmost; node != null; node = successor(node)) {
+            if (node.getValue().equals(value))
+                return true;
+        }
+        return false;
     }
 
     /**
-     * inorder traversal of the tree searching for the node with the given value.
-     * @param node the root of the subtree to be searched.
-     * @param value the value searched for.
+     * @return a cursor over the tree, not yet on any key.
      */
-    private void searchByValueHelper(INode<T, V> node, V value) {
-        if (node == null || node.getKey() == null)
-            return;
-        searchByValueHelper(node.getLeftChild(), value);
-        if (node.getValue().equals(value)) {
-            found = true;
-            return;
-        }
-        searchByValueHelper(node.getRightChild(), value);
+    public TreeCursor<T, V> cursor() {
+        return new TreeCursor<>(this);
     }
 
     /**
@@ -450,26 +948,571 @@ public class RedBlackTree<T extends Comparable<T>,V> implements IRedBlackTree<T,
      */
     public int getSize() { return this.size;}
 
+    /**
+     * @param node a node of the tree or the nil leaf.
+     * @return the number of keys in the subtree rooted at the given node.
+     */
+    private int subtreeSize(INode<T, V> node) { return ((Node<T, V>) node).getSubtreeSize(); }
+
+    private void setSubtreeSize(INode<T, V> node, int subtreeSize) { ((Node<T, V>) node).setSubtreeSize(subtreeSize); }
+
+    /**
+     * recompute the subtree size of the given node from its children.
+     */
+    private void updateSubtreeSize(INode<T, V> node) {
+        setSubtreeSize(node, subtreeSize(node.getLeftChild()) + subtreeSize(node.getRightChild()) + 1);
+    }
+
+    /**
+     * count the keys strictly less than the given key in one descent.
+     * @param key the key to rank, it does not have to be in the tree.
+     * @return the number of keys less than the given key.
+     */
+    public int rank(T key) {
+        if (key == null)
+            throw new RuntimeErrorException(new Error());
+        int rank = 0;
+        INode<T, V> node = root;
+        while (!node.isNull()) {
+            int cmp = compare(key, node.getKey());
+            if (cmp < 0) {
+                node = node.getLeftChild();
+            } else {
+                //everything in the left subtree and the node itself are before the key
+                rank += subtreeSize(node.getLeftChild());
+                if (cmp == 0)
+                    return rank;
+                rank++;
+                node = node.getRightChild();
+            }
+        }
+        return rank;
+    }
+
+    /**
+     * get the node holding the key of the given rank in one descent.
+     * @param index the number of keys less than the wanted one, from 0 to size - 1.
+     * @return the node with the index-th smallest key.
+     */
+    public INode<T, V> select(int index) {
+        if (index < 0 || index >= size)
+            throw new RuntimeErrorException(new Error());
+        INode<T, V> node = root;
+        while (true) {
+            int leftSize = subtreeSize(node.getLeftChild());
+            if (index < leftSize) {
+                node = node.getLeftChild();
+            } else if (index > leftSize) {
+                index -= leftSize + 1;
+                node = node.getRightChild();
+            } else {
+                return node;
+            }
+        }
+    }
+
+    /**
+     * count the keys greater than or equal to lo and strictly less than hi.
+     * @param lo the inclusive lower bound.
+     * @param hi the exclusive upper bound.
+     * @return the number of keys in the range, zero if hi is not greater than lo.
+     */
+    public int countInRange(T lo, T hi) {
+        if (lo == null || hi == null)
+            throw new RuntimeErrorException(new Error());
+        return Math.max(0, rank(hi) - rank(lo));
+    }
+
+    /**
+     * join two trees around a new key, all keys of left less than the key and all keys of right greater than it.
+     * Runs in O(log n): the black heights of the two trees are measured once, then the join itself only walks down
+     * the taller tree by the difference of the heights. Both trees are left empty.
+     * @param left the tree with the smaller keys.
+     * @param key the key between the two trees.
+     * @param value the value of the key.
+     * @param right the tree with the greater keys, ordered the same way as left.
+     * @return a new tree holding the keys of both trees and the given key.
+     */
+    public static <T extends Comparable<T>, V> RedBlackTree<T, V> join(RedBlackTree<T, V> left, T key, V value, RedBlackTree<T, V> right) {
+        if (left == null || right == null || left == right || key == null || value == null
+                || !Objects.equals(left.comparator, right.comparator))
+            throw new RuntimeErrorException(new Error());
+        if ((!left.isEmpty() && left.compare(left.maximum(left.root).getKey(), key) >= 0)
+                || (!right.isEmpty() && left.compare(key, right.minimum(right.root).getKey()) >= 0))
+            throw new RuntimeErrorException(new Error());
+        RedBlackTree<T, V> joined = new RedBlackTree<T, V>(left.comparator);
+        joined.setJoinedRoot(joined.join(left.root, blackHeight(left.root), new Node<>(key, value),
+                right.root, blackHeight(right.root)));
+        left.clear();
+        right.clear();
+        return joined;
+    }
+
+    /**
+     * move every key greater than or equal to the given key into a new tree in O(log n).
+     * @param key the key to split at, it does not have to be in the tree.
+     * @return a tree with the keys greater than or equal to the given key, this tree keeps the smaller ones.
+     */
+    public RedBlackTree<T, V> splitAt(T key) {
+        if (key == null)
+            throw new RuntimeErrorException(new Error());
+        Split split = split(root, blackHeight(root), key);
+        RedBlackTree<T, V> upper = new RedBlackTree<T, V>(comparator);
+        if (split.middle == null)
+            upper.setJoinedRoot(split.right);
+        else
+            upper.setJoinedRoot(upper.join(Node.nil(), 0, split.middle, split.right, split.rightHeight));
+        setJoinedRoot(split.left);
+        return upper;
+    }
+
+    /**
+     * append the keys of another tree whose keys are all greater than the keys of this tree in O(log n).
+     * @param other the tree to append, ordered the same way as this tree, left empty.
+     */
+    public void concat(RedBlackTree<T, V> other) {
+        if (other == null || other == this || !Objects.equals(comparator, other.comparator))
+            throw new RuntimeErrorException(new Error());
+        if (!isEmpty() && !other.isEmpty() && compare(maximum(root).getKey(), other.minimum(other.root).getKey()) >= 0)
+            throw new RuntimeErrorException(new Error());
+        setJoinedRoot(join(root, blackHeight(root), other.root, blackHeight(other.root)));
+        other.clear();
+    }
+
+    /**
+     * remove the keys greater than or equal to lo and strictly less than hi with two splits and a join,
+     * in O(log n) whatever the number of removed keys.
+     * @param lo the inclusive lower bound.
+     * @param hi the exclusive upper bound.
+     * @return the number of removed keys, zero if hi is not greater than lo.
+     */
+    public int removeRange(T lo, T hi) {
+        if (lo == null || hi == null)
+            throw new RuntimeErrorException(new Error());
+        if (compare(lo, hi) >= 0)
+            return 0;
+        int oldSize = size;
+        Split low = split(root, blackHeight(root), lo);
+        Split high = split(low.right, low.rightHeight, hi);
+        //the node with key lo is dropped with the range, the one with key hi is kept
+        if (high.middle == null)
+            setJoinedRoot(join(low.left, low.leftHeight, high.right, high.rightHeight));
+        else
+            setJoinedRoot(join(low.left, low.leftHeight, high.middle, high.right, high.rightHeight));
+        return oldSize - size;
+    }
+
+    /**
+     * add the keys of another tree to this tree, taking the values of the other tree for keys in both.
+     * The recursive halves run on the common fork join pool, doing O(m log(n/m + 1)) work for trees of sizes m <= n.
+     * @param other a tree ordered the same way as this tree, left empty.
+     */
+    public void union(RedBlackTree<T, V> other) {
+        setOperation(SetOperator.UNION, other);
+    }
+
+    /**
+     * keep only the keys of this tree that are also in another tree, with the values of this tree.
+     * @param other a tree ordered the same way as this tree, left empty.
+     */
+    public void intersection(RedBlackTree<T, V> other) {
+        setOperation(SetOperator.INTERSECTION, other);
+    }
+
+    /**
+     * remove the keys of another tree from this tree.
+     * @param other a tree ordered the same way as this tree, left empty.
+     */
+    public void difference(RedBlackTree<T, V> other) {
+        setOperation(SetOperator.DIFFERENCE, other);
+    }
+
+    private enum SetOperator { UNION, INTERSECTION, DIFFERENCE }
+
+    private void setOperation(SetOperator operator, RedBlackTree<T, V> other) {
+        if (other == null || !Objects.equals(comparator, other.comparator))
+            throw new RuntimeErrorException(new Error());
+        if (other == this) {
+            if (operator == SetOperator.DIFFERENCE)
+                clear();
+            return;
+        }
+        INode<T, V> result;
+        if (size + other.size < PARALLEL_THRESHOLD)
+            result = setOperation(operator, root, blackHeight(root), other.root, blackHeight(other.root));
+        else
+            result = ForkJoinPool.commonPool().invoke(
+                    new SetOperation(operator, root, blackHeight(root), other.root, blackHeight(other.root)));
+        other.clear();
+        setJoinedRoot(result);
+    }
+
+    /**
+     * split b around the root key of a, apply the operation to the two pairs of halves and join the results back,
+     * forking the upper half when the subtrees are large. The nodes of both subtrees are reused for the result.
+     * The black heights are carried along like in split, so every join costs the difference of the heights it joins.
+     * @param aHeight the black height of a, counting its root as black.
+     * @param bHeight the black height of b, counting its root as black.
+     * @return the root of the resulting subtree, whose black height is left in joinedHeight.
+     */
+    private INode<T, V> setOperation(SetOperator operator, INode<T, V> a, int aHeight, INode<T, V> b, int bHeight) {
+        if (a.isNull() || b.isNull()) {
+            boolean keepB = a.isNull() ? operator == SetOperator.UNION : operator == SetOperator.INTERSECTION;
+            joinedHeight = keepB ? bHeight : aHeight;
+            return keepB ? b : a;
+        }
+        boolean parallel = subtreeSize(a) + subtreeSize(b) >= PARALLEL_THRESHOLD;
+        INode<T, V> left = a.getLeftChild();
+        INode<T, V> right = a.getRightChild();
+        int leftHeight = childHeight(aHeight, left);
+        int rightHeight = childHeight(aHeight, right);
+        Split split = split(b, bHeight, a.getKey());
+        INode<T, V> lower;
+        INode<T, V> upper;
+        int lowerHeight;
+        int upperHeight;
+        if (parallel) {
+            SetOperation task = new SetOperation(operator, right, rightHeight, split.right, split.rightHeight);
+            task.fork();
+            lower = setOperation(operator, left, leftHeight, split.left, split.leftHeight);
+            lowerHeight = joinedHeight;
+            upper = task.join();
+            upperHeight = task.height;
+        } else {
+            lower = setOperation(operator, left, leftHeight, split.left, split.leftHeight);
+            lowerHeight = joinedHeight;
+            upper = setOperation(operator, right, rightHeight, split.right, split.rightHeight);
+            upperHeight = joinedHeight;
+        }
+        boolean inBoth = split.middle != null;
+        if (operator == SetOperator.UNION && inBoth)
+            a.setValue(split.middle.getValue());
+        if (operator == SetOperator.UNION || (operator == SetOperator.INTERSECTION) == inBoth)
+            return join(lower, lowerHeight, a, upper, upperHeight);
+        return join(lower, lowerHeight, upper, upperHeight);
+    }
+
+    /**
+     * one half of a set operation run on the fork join pool. The joins use the root of the tree they are called on
+     * while fixing colors, so every task works through a tree of its own.
+     */
+    private final class SetOperation extends RecursiveTask<INode<T, V>> {
+        private static final long serialVersionUID = 1L;
+
+        private final SetOperator operator;
+        private final INode<T, V> a;
+        private final int aHeight;
+        private final INode<T, V> b;
+        private final int bHeight;
+        //the black height of the result, read by the thread joining the task
+        private int height;
+
+        SetOperation(SetOperator operator, INode<T, V> a, int aHeight, INode<T, V> b, int bHeight) {
+            this.operator = operator;
+            this.a = a;
+            this.aHeight = aHeight;
+            this.b = b;
+            this.bHeight = bHeight;
+        }
+
+        @Override
+        protected INode<T, V> compute() {
+            RedBlackTree<T, V> scratch = new RedBlackTree<T, V>(comparator);
+            INode<T, V> result = scratch.setOperation(operator, a, aHeight, b, bHeight);
+            height = scratch.joinedHeight;
+            return result;
+        }
+    }
+
+    /**
+     * make the given subtree the whole tree.
+     */
+    private void setJoinedRoot(INode<T, V> node) {
+        node.setParent(null);
+        node.setColor(Node.BLACK);
+        this.root = node;
+        this.size = subtreeSize(node);
+        resetBounds();
+    }
+
+    /**
+     * the pieces of a subtree split around a key: the keys less than it, the node holding it if any and the keys greater than it,
+     * with the black heights of the two sides counting their roots as black.
+     */
+    private final class Split {
+        private final INode<T, V> left;
+        private final int leftHeight;
+        private final INode<T, V> middle;
+        private final INode<T, V> right;
+        private final int rightHeight;
+
+        Split(INode<T, V> left, int leftHeight, INode<T, V> middle, INode<T, V> right, int rightHeight) {
+            this.left = left;
+            this.leftHeight = leftHeight;
+            this.middle = middle;
+            this.right = right;
+            this.rightHeight = rightHeight;
+        }
+    }
+
+    /**
+     * @param height the black height of the parent, counting the parent as black.
+     * @return the black height of the given child, counting the child as black.
+     */
+    private static int childHeight(int height, INode<?, ?> child) {
+        return child.getColor() == Node.RED ? height : height - 1;
+    }
+
+    /**
+     * split the given subtree around the key, joining back the pieces on each side on the way up.
+     * The black heights are carried down from the root instead of being measured again, so each join only costs
+     * the difference of the heights it joins; these climb from the bottom and add up to O(log n) for the whole split.
+     * @param height the black height of the subtree, counting its root as black.
+     */
+    private Split split(INode<T, V> node, int height, T key) {
+        if (node.isNull())
+            return new Split(node, 0, null, node, 0);
+        INode<T, V> left = node.getLeftChild();
+        INode<T, V> right = node.getRightChild();
+        int leftHeight = childHeight(height, left);
+        int rightHeight = childHeight(height, right);
+        int cmp = compare(key, node.getKey());
+        if (cmp == 0)
+            return new Split(left, leftHeight, node, right, rightHeight);
+        if (cmp < 0) {
+            Split split = split(left, leftHeight, key);
+            INode<T, V> joined = join(split.right, split.rightHeight, node, right, rightHeight);
+            return new Split(split.left, split.leftHeight, split.middle, joined, joinedHeight);
+        }
+        Split split = split(right, rightHeight, key);
+        INode<T, V> joined = join(left, leftHeight, node, split.left, split.leftHeight);
+        return new Split(joined, joinedHeight, split.middle, split.right, split.rightHeight);
+    }
+
+    /**
+     * join two subtrees without a key between them, using the minimum of the right one as the pivot.
+     * The black height of the result is left in joinedHeight.
+     */
+    private INode<T, V> join(INode<T, V> left, int leftHeight, INode<T, V> right, int rightHeight) {
+        if (right.isNull()) {
+            joinedHeight = leftHeight;
+            return left;
+        }
+        if (left.isNull()) {
+            joinedHeight = rightHeight;
+            return right;
+        }
+        Split split = split(right, rightHeight, minimum(right).getKey());
+        return join(left, leftHeight, split.middle, split.right, split.rightHeight);
+    }
+
+    /**
+     * join two detached subtrees around a pivot node, all keys of left less than the pivot's and all keys of right greater.
+     * The shorter subtree is hung with the red pivot on the spine of the taller one where the black heights match,
+     * then the colors are fixed as after an insert, in O(|leftHeight - rightHeight| + 1).
+     * This tree's root is used while fixing, so the result is also left in it, and its black height in joinedHeight.
+     * @param leftHeight the black height of left, counting its root as black.
+     * @param rightHeight the black height of right, counting its root as black.
+     * @return the root of the joined subtree.
+     */
+    private INode<T, V> join(INode<T, V> left, int leftHeight, INode<T, V> pivot, INode<T, V> right, int rightHeight) {
+        left.setParent(null);
+        right.setParent(null);
+        left.setColor(Node.BLACK);
+        right.setColor(Node.BLACK);
+        if (leftHeight == rightHeight) {
+            link(pivot, left, right);
+            pivot.setParent(null);
+            pivot.setColor(Node.BLACK);
+            this.root = pivot;
+            joinedHeight = leftHeight + 1;
+            return pivot;
+        }
+        INode<T, V> parent = null;
+        INode<T, V> child;
+        if (leftHeight > rightHeight) {
+            //walk down the right spine of left to the black node with the same black height as right
+            child = left;
+            for (int height = leftHeight; child.getColor() == Node.RED || height > rightHeight; child = child.getRightChild()) {
+                if (child.getColor() == Node.BLACK)
+                    height--;
+                parent = child;
+            }
+            parent.setRightChild(pivot);
+            link(pivot, child, right);
+            this.root = left;
+        } else {
+            child = right;
+            for (int height = rightHeight; child.getColor() == Node.RED || height > leftHeight; child = child.getLeftChild()) {
+                if (child.getColor() == Node.BLACK)
+                    height--;
+                parent = child;
+            }
+            parent.setLeftChild(pivot);
+            link(pivot, left, child);
+            this.root = right;
+        }
+        pivot.setParent(parent);
+        pivot.setColor(Node.RED);
+        for (INode<T, V> p = parent; p != null; p = p.getParent())
+            updateSubtreeSize(p);
+        joinedHeight = Math.max(leftHeight, rightHeight) + (fixInsert(pivot) ? 1 : 0);
+        return this.root;
+    }
+
+    /**
+     * make left and right the children of the given node and recompute its subtree size.
+     */
+    private void link(INode<T, V> node, INode<T, V> left, INode<T, V> right) {
+        node.setLeftChild(left);
+        left.setParent(node);
+        node.setRightChild(right);
+        right.setParent(node);
+        updateSubtreeSize(node);
+    }
+
+    /**
+     * @return the number of black nodes on the path from the given node down to a leaf, the nil leaf excluded,
+     * counting the node itself as black.
+     */
+    private static int blackHeight(INode<?, ?> node) {
+        int height = node.isNull() || node.getColor() == Node.BLACK ? 0 : 1;
+        for (; !node.isNull(); node = node.getLeftChild())
+            if (node.getColor() == Node.BLACK)
+                height++;
+        return height;
+    }
+
+    /**
+     * replace the contents of the tree with the given entries in O(n) and without any rotation.
+     * The tree is built perfectly balanced with every node black except the deepest, partially filled level, which is red.
+     * @param entries the entries in strictly ascending key order.
+     * @param size the number of entries the iterator yields.
+     */
+    public void buildFromSorted(Iterator<? extends Map.Entry<? extends T, ? extends V>> entries, int size) {
+        if (entries == null || size < 0)
+            throw new RuntimeErrorException(new Error());
+        SortedBuilder builder = new SortedBuilder(entries, null, null, size);
+        INode<T, V> newRoot = builder.build(0, 0, size - 1);
+        if (entries.hasNext())
+            throw new RuntimeErrorException(new Error());
+        setBuiltRoot(newRoot, size);
+    }
+
+    /**
+     * replace the contents of the tree with the given keys and values in O(n) and without any rotation.
+     * @param keys the keys in strictly ascending order.
+     * @param values the values, values[i] is associated with keys[i].
+     */
+    public void buildFromSorted(T[] keys, V[] values) {
+        if (keys == null || values == null || keys.length != values.length)
+            throw new RuntimeErrorException(new Error());
+        SortedBuilder builder = new SortedBuilder(null, keys, values, keys.length);
+        setBuiltRoot(builder.build(0, 0, keys.length - 1), keys.length);
+    }
+
+    private void setBuiltRoot(INode<T, V> newRoot, int size) {
+        this.root = newRoot;
+        this.size = size;
+        resetBounds();
+    }
+
+    /**
+     * find the least and greatest nodes again after the tree was replaced as a whole.
+     */
+    private void resetBounds() {
+        leftmost = isEmpty() ? null : minimum(root);
+        rightmost = isEmpty() ? null : maximum(root);
+    }
+
+    /**
+     * @return the node with the least key in O(1), or null if the tree is empty.
+     */
+    public INode<T, V> firstNode() { return leftmost; }
+
+    /**
+     * @return the node with the greatest key in O(1), or null if the tree is empty.
+     */
+    public INode<T, V> lastNode() { return rightmost; }
+
+    /**
+     * builds a balanced tree from sorted entries read in order, checking that every key is greater than the previous one.
+     */
+    private final class SortedBuilder {
+        private final Iterator<? extends Map.Entry<? extends T, ? extends V>> entries;
+        private final T[] keys;
+        private final V[] values;
+        private final int redLevel;
+        private int index = 0;
+        private T previous;
+
+        SortedBuilder(Iterator<? extends Map.Entry<? extends T, ? extends V>> entries, T[] keys, V[] values, int size) {
+            this.entries = entries;
+            this.keys = keys;
+            this.values = values;
+            //the deepest level is the only one that may be partially filled, coloring it red keeps the black heights equal
+            int level = 0;
+            for (int m = size - 1; m >= 0; m = m / 2 - 1)
+                level++;
+            this.redLevel = level;
+        }
+
+        /**
+         * build the subtree holding the entries lo..hi (inclusive) at the given depth.
+         */
+        INode<T, V> build(int level, int lo, int hi) {
+            if (hi < lo)
+                return Node.nil();
+            int mid = (lo + hi) >>> 1;
+            INode<T, V> left = build(level + 1, lo, mid - 1);
+            T key;
+            V value;
+            if (entries != null) {
+                if (!entries.hasNext())
+                    throw new RuntimeErrorException(new Error());
+                Map.Entry<? extends T, ? extends V> entry = entries.next();
+                key = entry.getKey();
+                value = entry.getValue();
+            } else {
+                key = keys[index];
+                value = values[index];
+            }
+            index++;
+            if (key == null || value == null || (previous != null && compare(previous, key) >= 0))
+                throw new RuntimeErrorException(new Error());
+            previous = key;
+            INode<T, V> middle = new Node<>(key, value);
+            middle.setColor(level == redLevel ? INode.RED : INode.BLACK);
+            middle.setLeftChild(left);
+            left.setParent(middle);
+            INode<T, V> right = build(level + 1, mid + 1, hi);
+            middle.setRightChild(right);
+            right.setParent(middle);
+            setSubtreeSize(middle, hi - lo + 1);
+            return middle;
+        }
+    }
+
     /**
      * get the node with the maximum key in the given subtree.
      * @param node the root of the subtree searched for maximum node in it.
      * @return the maximum node.
      */
     public INode<T, V> maximum(INode<T,V> node) {
-        while (node.getRightChild().getKey() != null)
-            node = (Node) node.getRightChild();
+        for (int depth = 1; node != null && !node.getRightChild().isNull(); checkDepth(++depth))
+            node = node.getRightChild();
         return node;
     }
 
     /**
      * @param x a node in the tree
-     * @return the successor of x
+     * @return the successor of x, or null if x holds the maximum key
      */
     public INode<T, V> successor(INode<T, V> x) {
-        if (x.getRightChild().getKey() != null)
+        if (!x.getRightChild().isNull())
             return minimum(x.getRightChild());
         INode<T, V> y = x.getParent();
-        while (y.getKey() != null && x == y.getRightChild()) {
+        for (int depth = 1; y != null && x == y.getRightChild(); checkDepth(++depth)) {
             x = y;
             y = y.getParent();
         }
@@ -478,13 +1521,13 @@ public class RedBlackTree<T extends Comparable<T>,V> implements IRedBlackTree<T,
 
     /**
      * @param x a node in the tree
-     * @return the predecessor of x
+     * @return the predecessor of x, or null if x holds the minimum key
      */
     public INode<T, V> predecessor(INode<T, V> x) {
-        if (x.getLeftChild().getKey() != null)
+        if (!x.getLeftChild().isNull())
             return maximum(x.getLeftChild());
         INode<T, V> y = x.getParent();
-        while (y.getKey() != null && x == y.getLeftChild()) {
+        for (int depth = 1; y != null && x == y.getLeftChild(); checkDepth(++depth)) {
             x = y;
             y = y.getParent();
         }
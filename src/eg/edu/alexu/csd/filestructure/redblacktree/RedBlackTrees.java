@@ -0,0 +1,118 @@
+package eg.edu.alexu.csd.filestructure.redblacktree;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Comparator;
+
+/**
+ * factory methods for the alternative tree engines.
+ * The engines themselves are package-private so that {@link RedBlackTree} and {@link TreeMap} stay the only
+ * public implementations of {@link IRedBlackTree} and {@link ITreeMap}.
+ */
+public final class RedBlackTrees {
+
+    private RedBlackTrees() {
+    }
+
+    /**
+     * create a tree whose nodes live in parallel arrays indexed by int instead of one object per node.
+     * @return an empty array backed tree.
+     */
+    public static <T extends Comparable<T>, V> IRedBlackTree<T, V> arrayBacked() {
+        return new ArrayRedBlackTree<>();
+    }
+
+    /**
+     * create a tree whose nodes live in parallel arrays indexed by int instead of one object per node.
+     * @param initialCapacity number of nodes to allocate room for up front.
+     * @return an empty array backed tree.
+     */
+    public static <T extends Comparable<T>, V> IRedBlackTree<T, V> arrayBacked(int initialCapacity) {
+        return new ArrayRedBlackTree<>(initialCapacity);
+    }
+
+    /**
+     * create a tree for fixed width keys and values whose nodes live in direct buffers outside the java heap.
+     * @param keyCodec encodes the keys.
+     * @param valueCodec encodes the values.
+     * @return an empty off-heap tree.
+     */
+    public static <T extends Comparable<T>, V> IOffHeapRedBlackTree<T, V> offHeap(FixedWidthCodec<T> keyCodec, FixedWidthCodec<V> valueCodec) {
+        return new OffHeapRedBlackTree<>(keyCodec, valueCodec);
+    }
+
+    /**
+     * open the tree stored in the given file, or create an empty one if the file is new.
+     * Reopening an existing file maps its records back in without rebuilding the tree.
+     * @param file the file holding the tree.
+     * @param keyCodec encodes the keys, must match the one the file was created with.
+     * @param valueCodec encodes the values, must match the one the file was created with.
+     * @return the tree stored in the file.
+     * @throws IOException if the file cannot be opened or mapped.
+     */
+    public static <T extends Comparable<T>, V> IMappedRedBlackTree<T, V> mapped(Path file, FixedWidthCodec<T> keyCodec, FixedWidthCodec<V> valueCodec) throws IOException {
+        return new MappedRedBlackTree<>(file, keyCodec, valueCodec);
+    }
+
+    /**
+     * create a thread safe map whose readers never block, writers publishing each new version with one atomic swap.
+     * @return an empty concurrent map ordered by the natural ordering of the keys.
+     */
+    public static <T extends Comparable<T>, V> IConcurrentTreeMap<T, V> concurrentTreeMap() {
+        return new ConcurrentTreeMap<>();
+    }
+
+    /**
+     * create a thread safe map whose readers never block, writers publishing each new version with one atomic swap.
+     * @param comparator the ordering of the keys, or null for the natural ordering.
+     * @return an empty concurrent map.
+     */
+    public static <T extends Comparable<T>, V> IConcurrentTreeMap<T, V> concurrentTreeMap(Comparator<? super T> comparator) {
+        return new ConcurrentTreeMap<T, V>(comparator);
+    }
+
+    /**
+     * wrap a tree so it can be shared between threads, lookups on a {@link RedBlackTree} running optimistically without locking.
+     * @param tree the tree to guard, it must not be used directly afterwards.
+     * @return the thread safe view of the tree.
+     */
+    public static <T extends Comparable<T>, V> IRedBlackTree<T, V> synchronizedTree(IRedBlackTree<T, V> tree) {
+        return new SynchronizedRedBlackTree<>(tree);
+    }
+
+    /**
+     * wrap a map so it can be shared between threads, point lookups on a {@link TreeMap} running optimistically without locking.
+     * @param map the map to guard, it must not be used directly afterwards.
+     * @return the thread safe view of the map.
+     */
+    public static <T extends Comparable<T>, V> ITreeMap<T, V> synchronizedTreeMap(ITreeMap<T, V> map) {
+        return new SynchronizedTreeMap<>(map);
+    }
+
+    /**
+     * create a thread safe map spreading its keys over range shards with a lock each, so writes to different ranges run in parallel.
+     * @param maxShards the most shards the key space is split into.
+     * @return an empty sharded map.
+     */
+    public static <T extends Comparable<T>, V> ITreeMap<T, V> shardedTreeMap(int maxShards) {
+        return new ShardedTreeMap<>(maxShards);
+    }
+
+    /**
+     * create a thread safe tree whose lookups never lock, validating per node versions on the way down instead.
+     * @return an empty tree whose writers only lock the nodes near the key they insert or delete.
+     */
+    public static <T extends Comparable<T>, V> IRedBlackTree<T, V> optimisticTree() {
+        return new OptimisticRedBlackTree<>();
+    }
+
+    /**
+     * wrap a map so it can be shared between threads, concurrent puts and removes being applied in sorted batches
+     * by whichever thread holds the lock.
+     * @param map the map to guard, it must not be used directly afterwards.
+     * @return the thread safe view of the map.
+     */
+    public static <T extends Comparable<T>, V> ITreeMap<T, V> flatCombiningTreeMap(ITreeMap<T, V> map) {
+        return new FlatCombiningTreeMap<>(map);
+    }
+}
@@ -0,0 +1,522 @@
+package eg.edu.alexu.csd.filestructure.redblacktree;
+
+import javax.management.RuntimeErrorException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Function;
+
+/**
+ * thread safe tree map splitting the key space into ranges, each held by its own {@link RedBlackTree} behind its own lock,
+ * so writes to different ranges do not contend on one root.
+ * Single key operations find their shard under an optimistic stamp on the layout and only lock that shard.
+ * A shard grown past one and a half times its fair share is split at its median until there are as many shards as allowed,
+ * after which every shard is gathered and cut again at even quantiles, so a stream of ever growing keys keeps being spread
+ * over all the shards; a shard left empty is dropped. The check is made by the writer that grew the shard, before taking
+ * any layout lock, and one rebalance runs at a time. The moves use concat, select and splitAt, so they cost O(log n)
+ * per shard whatever the number of keys moved, and a shard has to grow by half its share again before the next one.
+ * Operations spanning shards hold the layout still and visit the shards in key order.
+ * Kept package-private so {@link TreeMap} stays the only public implementation of the interface,
+ * use {@link RedBlackTrees#shardedTreeMap(int)} to create one.
+ */
+class ShardedTreeMap<T extends Comparable<T>, V> implements ITreeMap<T, V> {
+    //shards are not split below this size, splitting tiny trees only adds locks to go through
+    private static final int MIN_SHARD_SIZE = 1 << 10;
+
+    private final int maxShards;
+    private final StampedLock layoutLock = new StampedLock();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicBoolean rebalancing = new AtomicBoolean();
+    private Layout<T, V> layout = new Layout<>();
+
+    ShardedTreeMap(int maxShards) {
+        if (maxShards < 1)
+            throw new RuntimeErrorException(new Error());
+        this.maxShards = maxShards;
+    }
+
+    /**
+     * the shards in key order with their locks and the lowest key each of them may hold, replaced as a whole on every change.
+     */
+    private static final class Layout<T extends Comparable<T>, V> {
+        //bounds.get(i) is the least key of shard i, the first shard takes every key below bounds.get(1) and has no bound
+        private final List<T> bounds;
+        private final List<RedBlackTree<T, V>> shards;
+        private final List<StampedLock> locks;
+
+        Layout() {
+            this(Collections.singletonList(null), Collections.singletonList(new RedBlackTree<>()),
+                    Collections.singletonList(new StampedLock()));
+        }
+
+        Layout(List<T> bounds, List<RedBlackTree<T, V>> shards, List<StampedLock> locks) {
+            this.bounds = bounds;
+            this.shards = shards;
+            this.locks = locks;
+        }
+
+        /**
+         * @return the index of the shard the given key belongs to.
+         */
+        int indexOf(T key) {
+            int lo = 1, hi = bounds.size() - 1, index = 0;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (key.compareTo(bounds.get(mid)) >= 0) {
+                    index = mid;
+                    lo = mid + 1;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            return index;
+        }
+
+        int size() { return shards.size(); }
+    }
+
+    /**
+     * @return the number of shards the keys are currently spread over.
+     */
+    int shardCount() {
+        return withLayout(Layout::size);
+    }
+
+    /**
+     * @return the number of keys in the fullest shard, read without locking the shards.
+     */
+    int largestShard() {
+        return withLayout(layout -> {
+            int largest = 0;
+            for (RedBlackTree<T, V> shard : layout.shards)
+                largest = Math.max(largest, shard.getSize());
+            return largest;
+        });
+    }
+
+    /**
+     * run an operation on the shard of the given key under the lock of that shard only,
+     * holding the layout still with a read lock only if it changed while the shard was being locked.
+     */
+    private <R> R withShard(T key, boolean write, Function<RedBlackTree<T, V>, R> operation) {
+        if (key == null)
+            throw new RuntimeErrorException(new Error());
+        long stamp = layoutLock.tryOptimisticRead();
+        if (stamp != 0) {
+            Layout<T, V> current = layout;
+            int index = current.indexOf(key);
+            StampedLock lock = current.locks.get(index);
+            long shardStamp = write ? lock.writeLock() : lock.readLock();
+            try {
+                //a layout change locks the shards it moves keys between, so a stamp still valid with the shard locked stays so
+                if (layoutLock.validate(stamp))
+                    return operation.apply(current.shards.get(index));
+            } finally {
+                lock.unlock(shardStamp);
+            }
+        }
+        return withLayout(current -> onShard(current, current.indexOf(key), write, operation));
+    }
+
+    private <R> R onShard(Layout<T, V> current, int index, boolean write, Function<RedBlackTree<T, V>, R> operation) {
+        StampedLock lock = current.locks.get(index);
+        long shardStamp = write ? lock.writeLock() : lock.readLock();
+        try {
+            return operation.apply(current.shards.get(index));
+        } finally {
+            lock.unlock(shardStamp);
+        }
+    }
+
+    private <R> R withLayout(Function<Layout<T, V>, R> operation) {
+        long stamp = layoutLock.readLock();
+        try {
+            return operation.apply(layout);
+        } finally {
+            layoutLock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @return the size a shard has to grow past to be split or to have the shards redistributed.
+     */
+    private int rebalanceThreshold() {
+        int share = size.get() / maxShards;
+        return Math.max(MIN_SHARD_SIZE, share + (share >> 1));
+    }
+
+    /**
+     * split the shard of the given key at its median, or redistribute every shard once the maximum number of shards
+     * is reached. Only called when the writer saw the shard past the threshold, and skipped while another rebalance
+     * runs: the writers racing with it find the shards balanced again or trigger the next one.
+     */
+    private void rebalance(T key) {
+        if (!rebalancing.compareAndSet(false, true))
+            return;
+        try {
+            long stamp = layoutLock.writeLock();
+            try {
+                if (layout.size() < maxShards)
+                    splitShard(layout, layout.indexOf(key));
+                else
+                    redistribute(layout);
+            } finally {
+                layoutLock.unlockWrite(stamp);
+            }
+        } finally {
+            rebalancing.set(false);
+        }
+    }
+
+    private void splitShard(Layout<T, V> current, int index) {
+        StampedLock lock = current.locks.get(index);
+        long shardStamp = lock.writeLock();
+        try {
+            RedBlackTree<T, V> shard = current.shards.get(index);
+            if (shard.getSize() <= rebalanceThreshold())
+                return;
+            T median = shard.select(shard.getSize() / 2).getKey();
+            List<T> bounds = new ArrayList<>(current.bounds);
+            List<RedBlackTree<T, V>> shards = new ArrayList<>(current.shards);
+            List<StampedLock> locks = new ArrayList<>(current.locks);
+            bounds.add(index + 1, median);
+            shards.add(index + 1, shard.splitAt(median));
+            locks.add(index + 1, new StampedLock());
+            layout = new Layout<>(bounds, shards, locks);
+        } finally {
+            lock.unlockWrite(shardStamp);
+        }
+    }
+
+    /**
+     * gather every shard into the first one and cut it again at even quantiles, keeping the shards and their locks.
+     */
+    private void redistribute(Layout<T, V> current) {
+        int count = current.size();
+        long[] stamps = new long[count];
+        for (int i = 0; i < count; i++)
+            stamps[i] = current.locks.get(i).writeLock();
+        try {
+            int total = 0, largest = 0;
+            for (RedBlackTree<T, V> shard : current.shards) {
+                total += shard.getSize();
+                largest = Math.max(largest, shard.getSize());
+            }
+            if (largest <= rebalanceThreshold() || total < count)
+                return;
+            RedBlackTree<T, V> all = current.shards.get(0);
+            for (int i = 1; i < count; i++)
+                all.concat(current.shards.get(i));
+            List<T> bounds = new ArrayList<>(current.bounds);
+            //cut from the top down, so every select runs on the keys still left in the first shard
+            for (int i = count - 1; i > 0; i--) {
+                T bound = all.select((int) ((long) i * total / count)).getKey();
+                current.shards.get(i).concat(all.splitAt(bound));
+                bounds.set(i, bound);
+            }
+            layout = new Layout<>(bounds, current.shards, current.locks);
+        } finally {
+            for (int i = 0; i < count; i++)
+                current.locks.get(i).unlockWrite(stamps[i]);
+        }
+    }
+
+    /**
+     * drop the shard of the given key if it is empty, its range going to the shard before it.
+     */
+    private void dropIfEmpty(T key) {
+        long stamp = layoutLock.writeLock();
+        try {
+            Layout<T, V> current = layout;
+            int index = current.indexOf(key);
+            if (current.size() == 1)
+                return;
+            StampedLock lock = current.locks.get(index);
+            long shardStamp = lock.writeLock();
+            try {
+                if (!current.shards.get(index).isEmpty())
+                    return;
+                List<T> bounds = new ArrayList<>(current.bounds);
+                List<RedBlackTree<T, V>> shards = new ArrayList<>(current.shards);
+                List<StampedLock> locks = new ArrayList<>(current.locks);
+                bounds.remove(index);
+                shards.remove(index);
+                locks.remove(index);
+                //the new first shard takes every key below the second one
+                bounds.set(0, null);
+                layout = new Layout<>(bounds, shards, locks);
+            } finally {
+                lock.unlockWrite(shardStamp);
+            }
+        } finally {
+            layoutLock.unlockWrite(stamp);
+        }
+    }
+
+    private static <T extends Comparable<T>, V> Map.Entry<T, V> snapshot(INode<T, V> node) {
+        return node == null ? null : new AbstractMap.SimpleImmutableEntry<>(node.getKey(), node.getValue());
+    }
+
+    /**
+     * add the entries of a shard in order, up to toKey when it is not null.
+     */
+    private static <T extends Comparable<T>, V> void collect(RedBlackTree<T, V> tree, T toKey, boolean inclusive, List<Map.Entry<T, V>> entries) {
+        if (tree.isEmpty())
+            return;
+        for (INode<T, V> node = tree.minimum(tree.getRoot()); node != null; node = tree.successor(node)) {
+            if (toKey != null) {
+                int cmp = tree.compare(node.getKey(), toKey);
+                if (cmp > 0 || (cmp == 0 && !inclusive))
+                    return;
+            }
+            entries.add(snapshot(node));
+        }
+    }
+
+    @Override
+    public Map.Entry<T, V> ceilingEntry(T key) {
+        if (key == null)
+            throw new RuntimeErrorException(new Error());
+        return withLayout(current -> {
+            for (int i = current.indexOf(key); i < current.size(); i++) {
+                Map.Entry<T, V> entry = onShard(current, i, false, tree -> snapshot(tree.ceilingNode(key, true)));
+                if (entry != null)
+                    return entry;
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public T ceilingKey(T key) {
+        Map.Entry<T, V> entry = ceilingEntry(key);
+        return entry == null ? null : entry.getKey();
+    }
+
+    @Override
+    public void clear() {
+        long stamp = layoutLock.writeLock();
+        try {
+            Layout<T, V> current = layout;
+            long[] stamps = new long[current.size()];
+            for (int i = 0; i < stamps.length; i++)
+                stamps[i] = current.locks.get(i).writeLock();
+            layout = new Layout<>();
+            size.set(0);
+            for (int i = 0; i < stamps.length; i++)
+                current.locks.get(i).unlockWrite(stamps[i]);
+        } finally {
+            layoutLock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean containsKey(T key) {
+        return withShard(key, false, tree -> tree.contains(key));
+    }
+
+    @Override
+    public boolean containsValue(V value) {
+        if (value == null)
+            throw new RuntimeErrorException(new Error());
+        return withLayout(current -> {
+            for (int i = 0; i < current.size(); i++)
+                if (onShard(current, i, false, tree -> tree.containsValue(value)))
+                    return true;
+            return false;
+        });
+    }
+
+    @Override
+    public Set<Map.Entry<T, V>> entrySet() {
+        return new LinkedHashSet<>(entries(null, false));
+    }
+
+    private List<Map.Entry<T, V>> entries(T toKey, boolean inclusive) {
+        return withLayout(current -> {
+            List<Map.Entry<T, V>> entries = new ArrayList<>();
+            int last = toKey == null ? current.size() - 1 : current.indexOf(toKey);
+            for (int i = 0; i <= last; i++) {
+                onShard(current, i, false, tree -> {
+                    collect(tree, toKey, inclusive, entries);
+                    return null;
+                });
+            }
+            return entries;
+        });
+    }
+
+    @Override
+    public Map.Entry<T, V> firstEntry() {
+        return withLayout(current -> {
+            for (int i = 0; i < current.size(); i++) {
+                Map.Entry<T, V> entry = onShard(current, i, false, tree -> tree.isEmpty() ? null : snapshot(tree.minimum(tree.getRoot())));
+                if (entry != null)
+                    return entry;
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public T firstKey() {
+        Map.Entry<T, V> entry = firstEntry();
+        return entry == null ? null : entry.getKey();
+    }
+
+    @Override
+    public Map.Entry<T, V> floorEntry(T key) {
+        if (key == null)
+            throw new RuntimeErrorException(new Error());
+        return withLayout(current -> {
+            for (int i = current.indexOf(key); i >= 0; i--) {
+                Map.Entry<T, V> entry = onShard(current, i, false, tree -> snapshot(tree.floorNode(key, true)));
+                if (entry != null)
+                    return entry;
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public T floorKey(T key) {
+        Map.Entry<T, V> entry = floorEntry(key);
+        return entry == null ? null : entry.getKey();
+    }
+
+    @Override
+    public V get(T key) {
+        return withShard(key, false, tree -> tree.search(key));
+    }
+
+    @Override
+    public ArrayList<Map.Entry<T, V>> headMap(T toKey) {
+        return headMap(toKey, false);
+    }
+
+    @Override
+    public ArrayList<Map.Entry<T, V>> headMap(T toKey, boolean inclusive) {
+        if (toKey == null)
+            throw new RuntimeErrorException(new Error());
+        return new ArrayList<>(entries(toKey, inclusive));
+    }
+
+    @Override
+    public Set<T> keySet() {
+        Set<T> keys = new LinkedHashSet<>();
+        for (Map.Entry<T, V> entry : entries(null, false))
+            keys.add(entry.getKey());
+        return keys;
+    }
+
+    @Override
+    public Map.Entry<T, V> lastEntry() {
+        return withLayout(current -> {
+            for (int i = current.size() - 1; i >= 0; i--) {
+                Map.Entry<T, V> entry = onShard(current, i, false, tree -> tree.isEmpty() ? null : snapshot(tree.maximum(tree.getRoot())));
+                if (entry != null)
+                    return entry;
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public T lastKey() {
+        Map.Entry<T, V> entry = lastEntry();
+        return entry == null ? null : entry.getKey();
+    }
+
+    @Override
+    public Map.Entry<T, V> pollFirstEntry() {
+        return poll(true);
+    }
+
+    @Override
+    public Map.Entry<T, V> pollLastEntry() {
+        return poll(false);
+    }
+
+    private Map.Entry<T, V> poll(boolean first) {
+        Map.Entry<T, V> polled = withLayout(current -> {
+            for (int n = 0; n < current.size(); n++) {
+                int i = first ? n : current.size() - 1 - n;
+                Map.Entry<T, V> entry = onShard(current, i, true, tree -> {
+                    if (tree.isEmpty())
+                        return null;
+                    INode<T, V> node = first ? tree.minimum(tree.getRoot()) : tree.maximum(tree.getRoot());
+                    Map.Entry<T, V> removed = snapshot(node);
+                    tree.delete(removed.getKey());
+                    size.decrementAndGet();
+                    return removed;
+                });
+                if (entry != null)
+                    return entry;
+            }
+            return null;
+        });
+        if (polled != null)
+            dropIfEmpty(polled.getKey());
+        return polled;
+    }
+
+    @Override
+    public V put(T key, V value) {
+        if (key == null || value == null)
+            throw new RuntimeErrorException(new Error());
+        Object[] previous = new Object[1];
+        int shardSize = withShard(key, true, tree -> {
+            previous[0] = tree.put(key, value);
+            if (previous[0] == null)
+                size.incrementAndGet();
+            return tree.getSize();
+        });
+        if (shardSize > rebalanceThreshold())
+            rebalance(key);
+        @SuppressWarnings("unchecked")
+        V old = (V) previous[0];
+        return old;
+    }
+
+    @Override
+    public void putAll(Map<T, V> map) {
+        if (map == null)
+            throw new RuntimeErrorException(new Error());
+        for (Map.Entry<T, V> entry : map.entrySet())
+            put(entry.getKey(), entry.getValue());
+    }
+
+    @Override
+    public boolean remove(T key) {
+        int shardSize = withShard(key, true, tree -> {
+            if (!tree.delete(key))
+                return -1;
+            size.decrementAndGet();
+            return tree.getSize();
+        });
+        if (shardSize == 0)
+            dropIfEmpty(key);
+        return shardSize >= 0;
+    }
+
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+    @Override
+    public Collection<V> values() {
+        List<V> values = new ArrayList<>();
+        for (Map.Entry<T, V> entry : entries(null, false))
+            values.add(entry.getValue());
+        return values;
+    }
+}
@@ -0,0 +1,104 @@
+package eg.edu.alexu.csd.filestructure.redblacktree;
+
+import javax.management.RuntimeErrorException;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+
+/**
+ * thread safe view of a tree guarded by a {@link StampedLock}.
+ * Updates take the write lock. Lookups on a {@link RedBlackTree} first run without locking under an optimistic stamp
+ * and are repeated under the read lock only if a writer got in meanwhile, or if the unlocked walk failed on links
+ * torn by that writer; other trees are read under the read lock.
+ * Kept package-private so {@link RedBlackTree} stays the only public implementation of the interface,
+ * use {@link RedBlackTrees#synchronizedTree(IRedBlackTree)} to create one.
+ */
+class SynchronizedRedBlackTree<T extends Comparable<T>, V> implements IRedBlackTree<T, V> {
+    private final IRedBlackTree<T, V> tree;
+    private final StampedLock lock = new StampedLock();
+    //only the walks of RedBlackTree are bounded, so only they are safe to run while a writer rotates
+    private final boolean optimistic;
+
+    SynchronizedRedBlackTree(IRedBlackTree<T, V> tree) {
+        if (tree == null)
+            throw new RuntimeErrorException(new Error());
+        this.tree = tree;
+        this.optimistic = tree instanceof RedBlackTree;
+    }
+
+    /**
+     * run a lookup under an optimistic stamp, falling back to the read lock when the stamp is invalidated.
+     */
+    static <R> R read(StampedLock lock, boolean optimistic, Supplier<R> read) {
+        if (optimistic) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0) {
+                try {
+                    R result = read.get();
+                    if (lock.validate(stamp))
+                        return result;
+                } catch (RuntimeException e) {
+                    //the walk saw a half done update, its result is discarded either way
+                }
+            }
+        }
+        long stamp = lock.readLock();
+        try {
+            return read.get();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    static <R> R write(StampedLock lock, Supplier<R> write) {
+        long stamp = lock.writeLock();
+        try {
+            return write.get();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * the root is read under the lock but the nodes reached from it are not guarded.
+     */
+    @Override
+    public INode<T, V> getRoot() {
+        return read(lock, optimistic, tree::getRoot);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return read(lock, optimistic, tree::isEmpty);
+    }
+
+    @Override
+    public void clear() {
+        write(lock, () -> {
+            tree.clear();
+            return null;
+        });
+    }
+
+    @Override
+    public V search(T key) {
+        return read(lock, optimistic, () -> tree.search(key));
+    }
+
+    @Override
+    public boolean contains(T key) {
+        return read(lock, optimistic, () -> tree.contains(key));
+    }
+
+    @Override
+    public void insert(T key, V value) {
+        write(lock, () -> {
+            tree.insert(key, value);
+            return null;
+        });
+    }
+
+    @Override
+    public boolean delete(T key) {
+        return write(lock, () -> tree.delete(key));
+    }
+}
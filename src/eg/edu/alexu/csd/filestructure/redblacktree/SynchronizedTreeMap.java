@@ -0,0 +1,173 @@
+package eg.edu.alexu.csd.filestructure.redblacktree;
+
+import javax.management.RuntimeErrorException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+
+/**
+ * thread safe view of a tree map guarded by a {@link StampedLock}, in the same way as {@link SynchronizedRedBlackTree}.
+ * Point and nearest key lookups on a {@link TreeMap} run under an optimistic stamp, the other lookups take the read lock.
+ * The live views of the map are copied under the read lock, and returned entries are immutable snapshots.
+ * Kept package-private so {@link TreeMap} stays the only public implementation of the interface,
+ * use {@link RedBlackTrees#synchronizedTreeMap(ITreeMap)} to create one.
+ */
+class SynchronizedTreeMap<T extends Comparable<T>, V> implements ITreeMap<T, V> {
+    private final ITreeMap<T, V> map;
+    private final StampedLock lock = new StampedLock();
+    private final boolean optimistic;
+
+    SynchronizedTreeMap(ITreeMap<T, V> map) {
+        if (map == null)
+            throw new RuntimeErrorException(new Error());
+        this.map = map;
+        this.optimistic = map instanceof TreeMap;
+    }
+
+    private <R> R optimisticRead(Supplier<R> read) {
+        return SynchronizedRedBlackTree.read(lock, optimistic, read);
+    }
+
+    private <R> R read(Supplier<R> read) {
+        return SynchronizedRedBlackTree.read(lock, false, read);
+    }
+
+    private <R> R write(Supplier<R> write) {
+        return SynchronizedRedBlackTree.write(lock, write);
+    }
+
+    private static <T, V> Map.Entry<T, V> snapshot(Map.Entry<T, V> entry) {
+        return entry == null ? null : new AbstractMap.SimpleImmutableEntry<>(entry);
+    }
+
+    @Override
+    public Map.Entry<T, V> ceilingEntry(T key) {
+        return optimisticRead(() -> snapshot(map.ceilingEntry(key)));
+    }
+
+    @Override
+    public T ceilingKey(T key) {
+        return optimisticRead(() -> map.ceilingKey(key));
+    }
+
+    @Override
+    public void clear() {
+        write(() -> {
+            map.clear();
+            return null;
+        });
+    }
+
+    @Override
+    public boolean containsKey(T key) {
+        return optimisticRead(() -> map.containsKey(key));
+    }
+
+    @Override
+    public boolean containsValue(V value) {
+        return read(() -> map.containsValue(value));
+    }
+
+    @Override
+    public Set<Map.Entry<T, V>> entrySet() {
+        return read(() -> {
+            Set<Map.Entry<T, V>> entries = new LinkedHashSet<>();
+            for (Map.Entry<T, V> entry : map.entrySet())
+                entries.add(snapshot(entry));
+            return entries;
+        });
+    }
+
+    @Override
+    public Map.Entry<T, V> firstEntry() {
+        return optimisticRead(() -> snapshot(map.firstEntry()));
+    }
+
+    @Override
+    public T firstKey() {
+        return optimisticRead(map::firstKey);
+    }
+
+    @Override
+    public Map.Entry<T, V> floorEntry(T key) {
+        return optimisticRead(() -> snapshot(map.floorEntry(key)));
+    }
+
+    @Override
+    public T floorKey(T key) {
+        return optimisticRead(() -> map.floorKey(key));
+    }
+
+    @Override
+    public V get(T key) {
+        return optimisticRead(() -> map.get(key));
+    }
+
+    @Override
+    public ArrayList<Map.Entry<T, V>> headMap(T toKey) {
+        return read(() -> new ArrayList<>(map.headMap(toKey)));
+    }
+
+    @Override
+    public ArrayList<Map.Entry<T, V>> headMap(T toKey, boolean inclusive) {
+        return read(() -> new ArrayList<>(map.headMap(toKey, inclusive)));
+    }
+
+    @Override
+    public Set<T> keySet() {
+        return read(() -> new LinkedHashSet<>(map.keySet()));
+    }
+
+    @Override
+    public Map.Entry<T, V> lastEntry() {
+        return optimisticRead(() -> snapshot(map.lastEntry()));
+    }
+
+    @Override
+    public T lastKey() {
+        return optimisticRead(map::lastKey);
+    }
+
+    @Override
+    public Map.Entry<T, V> pollFirstEntry() {
+        return write(() -> snapshot(map.pollFirstEntry()));
+    }
+
+    @Override
+    public Map.Entry<T, V> pollLastEntry() {
+        return write(() -> snapshot(map.pollLastEntry()));
+    }
+
+    @Override
+    public V put(T key, V value) {
+        return write(() -> map.put(key, value));
+    }
+
+    @Override
+    public void putAll(Map<T, V> source) {
+        write(() -> {
+            map.putAll(source);
+            return null;
+        });
+    }
+
+    @Override
+    public boolean remove(T key) {
+        return write(() -> map.remove(key));
+    }
+
+    @Override
+    public int size() {
+        return optimisticRead(map::size);
+    }
+
+    @Override
+    public Collection<V> values() {
+        return read(() -> new ArrayList<>(map.values()));
+    }
+}
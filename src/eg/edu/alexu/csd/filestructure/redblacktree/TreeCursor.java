@@ -0,0 +1,109 @@
+package eg.edu.alexu.csd.filestructure.redblacktree;
+
+import javax.management.RuntimeErrorException;
+
+/**
+ * position in a {@link RedBlackTree} that can be moved to a key or stepped through the keys in either direction.
+ * Stepping follows the parent links of the tree, so a full scan costs O(1) per step amortized, uses constant memory
+ * and allocates nothing. The tree must not be changed structurally while a cursor is in use, except through the cursor;
+ * removing through one cursor leaves any other cursor on the removed key invalid.
+ * @param <T> type of the keys.
+ * @param <V> type of the values.
+ */
+public final class TreeCursor<T extends Comparable<T>, V> {
+    private final RedBlackTree<T, V> tree;
+    //the node the cursor is on, or null once it moved past either end
+    private INode<T, V> node;
+
+    TreeCursor(RedBlackTree<T, V> tree) {
+        this.tree = tree;
+    }
+
+    /**
+     * move to the least key greater than or equal to the given key.
+     * @param key the key to seek.
+     * @return true if the cursor is on a key afterwards.
+     */
+    public boolean seek(T key) {
+        node = tree.ceilingNode(key, true);
+        return node != null;
+    }
+
+    /**
+     * move to the least key of the tree.
+     * @return true if the cursor is on a key afterwards, false if the tree is empty.
+     */
+    public boolean seekFirst() {
+        node = tree.firstNode();
+        return node != null;
+    }
+
+    /**
+     * move to the greatest key of the tree.
+     * @return true if the cursor is on a key afterwards, false if the tree is empty.
+     */
+    public boolean seekLast() {
+        node = tree.lastNode();
+        return node != null;
+    }
+
+    /**
+     * step to the next greater key.
+     * @return true if the cursor is on a key afterwards, false if it moved past the greatest key or was not on one.
+     */
+    public boolean next() {
+        if (node != null)
+            node = tree.successor(node);
+        return node != null;
+    }
+
+    /**
+     * step to the next smaller key.
+     * @return true if the cursor is on a key afterwards, false if it moved past the least key or was not on one.
+     */
+    public boolean prev() {
+        if (node != null)
+            node = tree.predecessor(node);
+        return node != null;
+    }
+
+    /**
+     * remove the key the cursor is on by unlinking its node directly, without searching for the key again,
+     * and move to the next greater key.
+     * @return true if the cursor is on a key afterwards, false if the removed key was the greatest.
+     */
+    public boolean remove() {
+        INode<T, V> removed = current();
+        //nodes are relinked but never swap keys on delete, so the successor found now stays the right node
+        node = tree.successor(removed);
+        tree.deleteNode(removed);
+        return node != null;
+    }
+
+    /**
+     * @return true if the cursor is on a key.
+     */
+    public boolean valid() {
+        return node != null;
+    }
+
+    /**
+     * @return the key the cursor is on.
+     */
+    public T key() {
+        return current().getKey();
+    }
+
+    /**
+     * @return the value of the key the cursor is on.
+     */
+    public V value() {
+        return current().getValue();
+    }
+
+    private INode<T, V> current() {
+        if (node == null)
+            throw new RuntimeErrorException(new Error());
+        return node;
+    }
+}
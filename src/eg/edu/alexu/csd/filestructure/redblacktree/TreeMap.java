@@ -2,41 +2,89 @@ package eg.edu.alexu.csd.filestructure.redblacktree;
 
 import javax.management.RuntimeErrorException;
 import java.util.*;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class TreeMap<T extends Comparable<T>, V> implements ITreeMap<T, V>{
 
-    private RedBlackTree<T, V> redBlackTree = new RedBlackTree<>();
-    private Set<Map.Entry<T, V>> entrySet;
-    private Collection<V> values;
-    private ArrayList<Map.Entry<T, V>> headMapList = new ArrayList<>();
+    private RedBlackTree<T, V> redBlackTree;
 
     TreeMap() {
-        this.entrySet = new LinkedHashSet<>();
-        this.values = new LinkedHashSet<>();
+        this(null);
+    }
+
+    /**
+     * create a map ordered by the given comparator instead of the natural ordering of the keys.
+     * The keys keep the Comparable bound of {@link ITreeMap}, but with a comparator only the comparator orders them.
+     * @param comparator the ordering of the keys, or null for the natural ordering.
+     */
+    public TreeMap(Comparator<? super T> comparator) {
+        this.redBlackTree = new RedBlackTree<T, V>(comparator);
+    }
+
+    /**
+     * @return the comparator ordering the keys, or null if they use their natural ordering.
+     */
+    public Comparator<? super T> comparator() {
+        return redBlackTree.comparator();
     }
 
     public Map.Entry<T, V> nodeToEntry(INode<T, V> node){
         if (node == null)
             return null;
-        Map.Entry<T, V> entry = new Map.Entry<>() {
-            @Override
-            public T getKey() {
-               return node.getKey();
-            }
+        return new NodeEntry<>(node);
+    }
 
-            @Override
-            public V getValue() {
-                return node.getValue();
-            }
+    /**
+     * entry writing through to the node it was made from, equal to any entry with an equal key and value.
+     */
+    private static final class NodeEntry<T extends Comparable<T>, V> implements Map.Entry<T, V> {
+        private final INode<T, V> node;
+        private final T key;
 
-            @Override
-            public V setValue(V value) {
-                V val = node.getValue();
-                node.setValue(value);
-                return val;
-            }
-        };
-        return entry;
+        NodeEntry(INode<T, V> node) {
+            this.node = node;
+            this.key = node.getKey();
+        }
+
+        @Override
+        public T getKey() {
+            return key;
+        }
+
+        @Override
+        public V getValue() {
+            return node.getValue();
+        }
+
+        @Override
+        public V setValue(V value) {
+            if (value == null)
+                throw new RuntimeErrorException(new Error());
+            V val = node.getValue();
+            node.setValue(value);
+            return val;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry))
+                return false;
+            Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+            return Objects.equals(key, entry.getKey()) && Objects.equals(getValue(), entry.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(key) ^ Objects.hashCode(getValue());
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + getValue();
+        }
     }
 
     public AbstractMap.SimpleEntry<T, V> nodeToSimpleEntry(INode<T, V> node){
@@ -48,36 +96,34 @@ public class TreeMap<T extends Comparable<T>, V> implements ITreeMap<T, V>{
 
     @Override
     public Map.Entry<T, V> ceilingEntry(T key) {
-        if (key == null)
-            throw new RuntimeErrorException(new Error());
-        //get the node with the given key
-        INode<T, V> node = redBlackTree.searchHelper(redBlackTree.getRoot(), key);
-        //if key is found, return the entry with the given key
-        if (node != null || node.getKey() != null)
-            return nodeToSimpleEntry(node);
-        //if key is not found, get the least key greater than or equal it
-        node = redBlackTree.getRoot();
-        if (node != null && node.getKey() != null && node.getKey().compareTo(key) > 0) { //ceiling node is left
-            while (node.getKey().compareTo(key) > 0)
-                node = redBlackTree.predecessor(node);
-            return nodeToSimpleEntry(redBlackTree.successor(node));
-        } else { //ceiling node is right
-            while (node != null && node.getKey() != null && node.getKey().compareTo(key) < 0)
-                node = redBlackTree.successor(node);
-            if (node != null && node.getKey() != null && node.getKey().compareTo(key) < 0)
-                return null;
-            return nodeToSimpleEntry(redBlackTree.predecessor(node));
-        }
+        return nodeToSimpleEntry(redBlackTree.ceilingNode(key, true));
     }
 
     @Override
     public T ceilingKey(T key) {
-        if (key == null)
-            throw new RuntimeErrorException(new Error());
-        Map.Entry<T, V> entry = ceilingEntry(key);
-        if (entry == null)
-            throw new RuntimeErrorException(new Error());
-        return entry.getKey();
+        return keyOf(redBlackTree.ceilingNode(key, true));
+    }
+
+    /**
+     * Returns a key-value mapping associated with the least key strictly greater than the given key, or null if there is no such key.
+     * @param key
+     * @return
+     */
+    public Map.Entry<T, V> higherEntry(T key) {
+        return nodeToSimpleEntry(redBlackTree.ceilingNode(key, false));
+    }
+
+    /**
+     * Returns the least key strictly greater than the given key, or null if there is no such key.
+     * @param key
+     * @return
+     */
+    public T higherKey(T key) {
+        return keyOf(redBlackTree.ceilingNode(key, false));
+    }
+
+    private T keyOf(INode<T, V> node) {
+        return node == null ? null : node.getKey();
     }
 
     @Override
@@ -99,61 +145,240 @@ public class TreeMap<T extends Comparable<T>, V> implements ITreeMap<T, V>{
         return redBlackTree.containsValue(value);
     }
 
+    /**
+     * @return a live view of the mappings in ascending key order, walking the tree as it is iterated.
+     * Its entries write through to the map. The map must not be changed structurally while the view is iterated,
+     * except through the remove method of the iterator.
+     */
     @Override
     public Set<Map.Entry<T, V>> entrySet() {
-        //TODO
-        entrySet.clear();
-        entrySetHelper(redBlackTree.getRoot());
-        return entrySet;
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Map.Entry<T, V>> iterator() {
+                return new NodeIterator<>() {
+                    @Override
+                    public Map.Entry<T, V> next() {
+                        return nodeToEntry(nextNode());
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return redBlackTree.getSize();
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                if (!(o instanceof Map.Entry))
+                    return false;
+                Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+                INode<T, V> node = nodeOf(entry.getKey());
+                return node != null && Objects.equals(node.getValue(), entry.getValue());
+            }
+
+            @Override
+            public Spliterator<Map.Entry<T, V>> spliterator() {
+                return entrySpliterator();
+            }
+        };
     }
 
+    /**
+     * @return a live view of the keys in ascending order, walking the tree as it is iterated.
+     */
     @Override
-    public Map.Entry<T, V> firstEntry() {
-        if (redBlackTree.isEmpty())
+    public Set<T> keySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<T> iterator() {
+                return new NodeIterator<>() {
+                    @Override
+                    public T next() {
+                        return nextNode().getKey();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return redBlackTree.getSize();
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return nodeOf(o) != null;
+            }
+
+            @Override
+            public boolean remove(Object o) {
+                INode<T, V> node = nodeOf(o);
+                if (node == null)
+                    return false;
+                redBlackTree.deleteNode(node);
+                return true;
+            }
+
+            @Override
+            public Spliterator<T> spliterator() {
+                return new TreeSpliterator<>(redBlackTree, INode::getKey, true, redBlackTree.comparator());
+            }
+        };
+    }
+
+    /**
+     * @return a live view of the values in ascending order of their keys, equal values appearing once per key.
+     */
+    @Override
+    public Collection<V> values() {
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<V> iterator() {
+                return new NodeIterator<>() {
+                    @Override
+                    public V next() {
+                        return nextNode().getValue();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return redBlackTree.getSize();
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                if (o == null)
+                    return false;
+                try {
+                    @SuppressWarnings("unchecked")
+                    V value = (V) o;
+                    return redBlackTree.containsValue(value);
+                } catch (ClassCastException e) {
+                    return false;
+                }
+            }
+
+            @Override
+            public Spliterator<V> spliterator() {
+                return new TreeSpliterator<>(redBlackTree, INode::getValue, false, null);
+            }
+        };
+    }
+
+    private Spliterator<Map.Entry<T, V>> entrySpliterator() {
+        Comparator<? super T> comparator = redBlackTree.comparator();
+        Comparator<Map.Entry<T, V>> order = comparator == null
+                ? Map.Entry.comparingByKey() : Map.Entry.comparingByKey(comparator);
+        return new TreeSpliterator<>(redBlackTree, this::nodeToEntry, true, order);
+    }
+
+    /**
+     * @return a sequential stream of the mappings in ascending key order, split at subtree roots when made parallel.
+     */
+    public Stream<Map.Entry<T, V>> stream() {
+        return StreamSupport.stream(entrySpliterator(), false);
+    }
+
+    /**
+     * @return a parallel stream of the mappings, each worker walking a subtree of the map without copying it.
+     */
+    public Stream<Map.Entry<T, V>> parallelStream() {
+        return StreamSupport.stream(entrySpliterator(), true);
+    }
+
+    /**
+     * @return a cursor over the mappings, not yet on any key.
+     */
+    public TreeCursor<T, V> cursor() {
+        return redBlackTree.cursor();
+    }
+
+    /**
+     * in order walk from the least node, stepping to the successor of the node last returned.
+     */
+    private abstract class NodeIterator<E> implements Iterator<E> {
+        private INode<T, V> next = redBlackTree.firstNode();
+        private INode<T, V> lastReturned;
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        INode<T, V> nextNode() {
+            INode<T, V> node = next;
+            if (node == null)
+                throw new NoSuchElementException();
+            next = redBlackTree.successor(node);
+            lastReturned = node;
+            return node;
+        }
+
+        /**
+         * unlink the node last returned directly, the next node found before stays valid as delete never moves keys.
+         */
+        @Override
+        public void remove() {
+            if (lastReturned == null)
+                throw new IllegalStateException();
+            redBlackTree.deleteNode(lastReturned);
+            lastReturned = null;
+        }
+    }
+
+    /**
+     * @return the node holding the given key, or null if the key is absent or of another type.
+     */
+    private INode<T, V> nodeOf(Object key) {
+        if (key == null)
+            return null;
+        try {
+            @SuppressWarnings("unchecked")
+            T k = (T) key;
+            return redBlackTree.searchHelper(redBlackTree.getRoot(), k);
+        } catch (ClassCastException e) {
             return null;
-        return nodeToEntry(redBlackTree.minimum(redBlackTree.getRoot()));
+        }
+    }
+
+    @Override
+    public Map.Entry<T, V> firstEntry() {
+        return nodeToEntry(redBlackTree.firstNode());
     }
 
     @Override
     public T firstKey() {
-        if (redBlackTree.isEmpty())
-            return null;
-        return firstEntry().getKey();
+        return keyOf(redBlackTree.firstNode());
     }
 
     @Override
     public Map.Entry<T, V> floorEntry(T key) {
-        //TODO
-        if (key == null)
-            throw new RuntimeErrorException(new Error());
-        //get the node with the given key
-        INode<T, V> node = redBlackTree.searchHelper(redBlackTree.getRoot(), key);
-        //if key is found, return the entry with the given key
-        if (node != null || node.getKey() != null)
-            return nodeToSimpleEntry(node);
-        //if key is not found, get the greatest key less than or equal it
-        node = redBlackTree.getRoot();
-        if (node != null && node.getKey() != null && node.getKey().compareTo(key) < 0) { //floor node is right
-            while (node.getKey().compareTo(key) < 0)
-                node = redBlackTree.successor(node);
-            return nodeToSimpleEntry(redBlackTree.predecessor(node));
-        } else{ //floor node is left
-            while (node != null && node.getKey() != null && node.getKey().compareTo(key) > 0)
-                node = redBlackTree.predecessor(node);
-            if (node != null && node.getKey() != null && node.getKey().compareTo(key) > 0)
-                return null;
-            return nodeToSimpleEntry(node);
-        }
+        return nodeToSimpleEntry(redBlackTree.floorNode(key, true));
     }
 
     @Override
     public T floorKey(T key) {
-        if (key == null)
-            throw new RuntimeErrorException(new Error());
-        Map.Entry<T, V> temp = floorEntry(key);
-        if (temp == null)
-            throw new RuntimeErrorException(new Error());
-        return temp.getKey();
+        return keyOf(redBlackTree.floorNode(key, true));
+    }
+
+    /**
+     * Returns a key-value mapping associated with the greatest key strictly less than the given key, or null if there is no such key.
+     * @param key
+     * @return
+     */
+    public Map.Entry<T, V> lowerEntry(T key) {
+        return nodeToSimpleEntry(redBlackTree.floorNode(key, false));
+    }
+
+    /**
+     * Returns the greatest key strictly less than the given key, or null if there is no such key.
+     * @param key
+     * @return
+     */
+    public T lowerKey(T key) {
+        return keyOf(redBlackTree.floorNode(key, false));
     }
 
     @Override
@@ -163,93 +388,219 @@ public class TreeMap<T extends Comparable<T>, V> implements ITreeMap<T, V>{
 
     @Override
     public ArrayList<Map.Entry<T, V>> headMap(T toKey) {
+        return headMap(toKey, false);
+    }
+
+    @Override
+    public ArrayList<Map.Entry<T, V>> headMap(T toKey, boolean inclusive) {
         if (toKey == null)
             throw new RuntimeErrorException(new Error());
-        headMapHelper(redBlackTree.getRoot(), toKey);
-        return headMapList;
+        return range(redBlackTree.firstNode(), toKey, inclusive);
     }
 
-    private void headMapHelper(INode<T, V> node, T toKey){
-        if (node == null || node.getKey() == null)
-            return;
-        headMapHelper(node.getLeftChild(),toKey);
-        if (node.getKey().compareTo(toKey) < 0)
-            headMapList.add(nodeToSimpleEntry(node));
-        headMapHelper( node.getRightChild(),toKey);
+    /**
+     * Returns the portion of this map whose keys are greater than (or equal to, if inclusive is true) fromKey in ascending order.
+     * @param fromKey
+     * @param inclusive
+     * @return the mappings from fromKey to the end of the map.
+     */
+    public ArrayList<Map.Entry<T, V>> tailMap(T fromKey, boolean inclusive) {
+        return range(redBlackTree.ceilingNode(fromKey, inclusive), null, false);
     }
 
-    @Override
-    public ArrayList<Map.Entry<T, V>> headMap(T toKey, boolean inclusive) {
-        if (toKey == null)
+    /**
+     * Returns the portion of this map whose keys range from fromKey to toKey in ascending order.
+     * @param fromKey
+     * @param fromInclusive whether a mapping of fromKey itself is included.
+     * @param toKey
+     * @param toInclusive whether a mapping of toKey itself is included.
+     * @return the mappings between the two keys.
+     */
+    public ArrayList<Map.Entry<T, V>> subMap(T fromKey, boolean fromInclusive, T toKey, boolean toInclusive) {
+        if (fromKey == null || toKey == null || redBlackTree.compare(fromKey, toKey) > 0)
             throw new RuntimeErrorException(new Error());
-        ArrayList<Map.Entry<T, V>> specialHeadMapList = headMap(toKey);
-        if (!inclusive) {
-            return specialHeadMapList;
-        } else {
-            INode<T, V> node = redBlackTree.searchHelper(redBlackTree.getRoot(),toKey);
-            if (node != null)
-                specialHeadMapList.add(nodeToSimpleEntry(node));
-            return specialHeadMapList;
-        }
+        return range(redBlackTree.ceilingNode(fromKey, fromInclusive), toKey, toInclusive);
     }
 
-    @Override
-    public Set<T> keySet() {
-        //TODO
-        Set<T> keys = new LinkedHashSet<>();
-        entrySet = entrySet();
-        for (Map.Entry<T,V> entry : entrySet)
-            keys.add(entry.getKey());
-        return keys;
+    /**
+     * collect the mappings from a node up to a bound, one descent to the node and then a step to each successor,
+     * so only the k mappings returned are visited.
+     * @param from the node of the least key returned, or null if there is none.
+     * @param toKey the upper bound, or null for the end of the map.
+     */
+    private ArrayList<Map.Entry<T, V>> range(INode<T, V> from, T toKey, boolean inclusive) {
+        ArrayList<Map.Entry<T, V>> entries = new ArrayList<>();
+        for (INode<T, V> node = from; node != null; node = redBlackTree.successor(node)) {
+            if (toKey != null) {
+                int cmp = redBlackTree.compare(node.getKey(), toKey);
+                if (cmp > 0 || (cmp == 0 && !inclusive))
+                    break;
+            }
+            entries.add(nodeToSimpleEntry(node));
+        }
+        return entries;
     }
 
     @Override
     public Map.Entry<T, V> lastEntry() {
-        if (redBlackTree.isEmpty())
-            return null;
-        return nodeToEntry(redBlackTree.maximum(redBlackTree.getRoot()));
+        return nodeToEntry(redBlackTree.lastNode());
     }
 
     @Override
     public T lastKey() {
-        if (redBlackTree.isEmpty())
-            return null;
-        return lastEntry().getKey();
+        return keyOf(redBlackTree.lastNode());
     }
 
     @Override
     public Map.Entry<T, V> pollFirstEntry() {
-        if (redBlackTree.isEmpty())
-            return null;
-        Map.Entry<T, V> temp = firstEntry();
-        if (temp == null)
-            return null;
-        remove(temp.getKey());
-        return temp;
+        return poll(redBlackTree.firstNode());
     }
 
     @Override
     public Map.Entry<T, V> pollLastEntry() {
-        if (redBlackTree.isEmpty())
-            return null;
-        Map.Entry<T, V> temp = lastEntry();
-        if (temp == null)
+        return poll(redBlackTree.lastNode());
+    }
+
+    /**
+     * unlink the given node directly instead of searching for its key again.
+     * @return a snapshot of the removed mapping, or null if there was none.
+     */
+    private Map.Entry<T, V> poll(INode<T, V> node) {
+        if (node == null)
             return null;
-        remove(temp.getKey());
-        return temp;
+        Map.Entry<T, V> entry = nodeToSimpleEntry(node);
+        redBlackTree.deleteNode(node);
+        return entry;
     }
 
     @Override
-    public void put(T key, V value) {
-        redBlackTree.insert(key, value);
+    public V put(T key, V value) {
+        return redBlackTree.put(key, value);
+    }
+
+    /**
+     * Associates the value with the key only if the key is not mapped yet.
+     * @param key
+     * @param value
+     * @return the current value of the key, or null if the value was put.
+     */
+    public V putIfAbsent(T key, V value) {
+        return redBlackTree.putIfAbsent(key, value);
+    }
+
+    /**
+     * Replaces the value of the key only if the key is mapped.
+     * @param key
+     * @param value
+     * @return the previous value, or null if the key was not mapped.
+     */
+    public V replace(T key, V value) {
+        return redBlackTree.replace(key, value);
+    }
+
+    /**
+     * Replaces the value of the key only if it is currently mapped to oldValue.
+     * @param key
+     * @param oldValue
+     * @param newValue
+     * @return true if the value was replaced.
+     */
+    public boolean replace(T key, V oldValue, V newValue) {
+        return redBlackTree.replace(key, oldValue, newValue);
+    }
+
+    /**
+     * Computes a new value for the key from its current value (or null), removing the mapping if the result is null.
+     * The key is located once, so the function must not change this map.
+     * @param key
+     * @param remapping
+     * @return the new value, or null if the key is not mapped afterwards.
+     */
+    public V compute(T key, BiFunction<? super T, ? super V, ? extends V> remapping) {
+        return redBlackTree.compute(key, remapping);
+    }
+
+    /**
+     * Computes a value for the key only if it is not mapped, nothing is put if the result is null.
+     * @param key
+     * @param mapping
+     * @return the current or the computed value.
+     */
+    public V computeIfAbsent(T key, Function<? super T, ? extends V> mapping) {
+        return redBlackTree.computeIfAbsent(key, mapping);
+    }
+
+    /**
+     * Computes a new value for the key only if it is mapped, removing the mapping if the result is null.
+     * @param key
+     * @param remapping
+     * @return the new value, or null if the key is not mapped afterwards.
+     */
+    public V computeIfPresent(T key, BiFunction<? super T, ? super V, ? extends V> remapping) {
+        return redBlackTree.computeIfPresent(key, remapping);
+    }
+
+    /**
+     * Puts the value if the key is not mapped, otherwise combines it with the current value,
+     * removing the mapping if the combination is null.
+     * @param key
+     * @param value
+     * @param remapping
+     * @return the new value, or null if the key is not mapped afterwards.
+     */
+    public V merge(T key, V value, BiFunction<? super V, ? super V, ? extends V> remapping) {
+        return redBlackTree.merge(key, value, remapping);
     }
 
     @Override
     public void putAll(Map<T, V> map) {
         if (map == null)
             throw new RuntimeErrorException(new Error());
-        for (Map.Entry<T,V> entry : map.entrySet())
-            put(entry.getKey() , entry.getValue());
+        //an empty map filled from a map sorted the same way is built in linear time
+        if (redBlackTree.isEmpty() && map instanceof SortedMap
+                && Objects.equals(((SortedMap<T, V>) map).comparator(), redBlackTree.comparator())) {
+            buildFromSorted((SortedMap<T, V>) map);
+            return;
+        }
+        insertAll(map.entrySet());
+    }
+
+    /**
+     * Inserts a batch of unsorted mappings, sorting them first and merging them into the map in one pass.
+     * When two entries have equal keys the later one wins.
+     * @param batch
+     * @return how many keys were new and how many had their values replaced.
+     */
+    public InsertAllResult insertAll(Collection<? extends Map.Entry<? extends T, ? extends V>> batch) {
+        return redBlackTree.insertAll(batch);
+    }
+
+    /**
+     * Replaces the contents of this map with the mappings of the given sorted map in linear time.
+     * @param map a map whose keys are sorted in the same order as this map.
+     */
+    public void buildFromSorted(SortedMap<T, ? extends V> map) {
+        if (map == null)
+            throw new RuntimeErrorException(new Error());
+        redBlackTree.buildFromSorted(map.entrySet().iterator(), map.size());
+    }
+
+    /**
+     * Replaces the contents of this map with the given entries in linear time.
+     * @param entries the entries in strictly ascending key order.
+     * @param size the number of entries.
+     */
+    public void buildFromSorted(Iterator<? extends Map.Entry<? extends T, ? extends V>> entries, int size) {
+        redBlackTree.buildFromSorted(entries, size);
+    }
+
+    /**
+     * Replaces the contents of this map with the given keys and values in linear time.
+     * @param keys the keys in strictly ascending order.
+     * @param values the values, values[i] is associated with keys[i].
+     */
+    public void buildFromSorted(T[] keys, V[] values) {
+        redBlackTree.buildFromSorted(keys, values);
     }
 
     @Override
@@ -263,20 +614,73 @@ public class TreeMap<T extends Comparable<T>, V> implements ITreeMap<T, V>{
     }
 
 
-    @Override
-    public Collection<V> values() {
-        entrySet = entrySet();
-        for (Map.Entry<T,V> entry : entrySet)
-            values.add(entry.getValue());
-        return values;
+    /**
+     * Returns the number of keys strictly less than the given key.
+     * @param key
+     * @return
+     */
+    public int rank(T key) {
+        return redBlackTree.rank(key);
     }
 
-    private void entrySetHelper(INode<T, V> node) {
-        if (node.getKey() == null || node == null)
-            return;
-        entrySetHelper(node.getLeftChild());
-        entrySet.add(nodeToSimpleEntry(node));
-        entrySetHelper(node.getRightChild());
+    /**
+     * Returns the key-value mapping whose key has the given rank, counting from 0 in ascending key order.
+     * @param index
+     * @return
+     */
+    public Map.Entry<T, V> select(int index) {
+        return nodeToEntry(redBlackTree.select(index));
+    }
+
+    /**
+     * Returns the number of keys greater than or equal to lo and strictly less than hi.
+     * @param lo
+     * @param hi
+     * @return
+     */
+    public int countInRange(T lo, T hi) {
+        return redBlackTree.countInRange(lo, hi);
+    }
+
+    /**
+     * Removes the mappings whose keys are greater than or equal to lo and strictly less than hi in O(log n).
+     * @param lo
+     * @param hi
+     * @return the number of removed mappings.
+     */
+    public int removeRange(T lo, T hi) {
+        return redBlackTree.removeRange(lo, hi);
+    }
+
+    /**
+     * Adds the mappings of another map ordered the same way, its values replacing the ones of keys in both maps.
+     * The other map is left empty.
+     * @param other
+     */
+    public void union(TreeMap<T, V> other) {
+        redBlackTree.union(treeOf(other));
+    }
+
+    /**
+     * Keeps only the mappings whose keys are also in another map ordered the same way, which is left empty.
+     * @param other
+     */
+    public void intersection(TreeMap<T, V> other) {
+        redBlackTree.intersection(treeOf(other));
+    }
+
+    /**
+     * Removes the mappings whose keys are in another map ordered the same way, which is left empty.
+     * @param other
+     */
+    public void difference(TreeMap<T, V> other) {
+        redBlackTree.difference(treeOf(other));
+    }
+
+    private RedBlackTree<T, V> treeOf(TreeMap<T, V> other) {
+        if (other == null)
+            throw new RuntimeErrorException(new Error());
+        return other.redBlackTree;
     }
 
 }
@@ -0,0 +1,114 @@
+package eg.edu.alexu.csd.filestructure.redblacktree;
+
+import javax.management.RuntimeErrorException;
+import java.util.Comparator;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * spliterator over the nodes of a {@link RedBlackTree} in key order, in the same way as the ones of java.util.TreeMap.
+ * It covers the nodes from current up to but excluding fence, and splits at the root of the subtree between them:
+ * the first split at the root of the tree, then at the right child of current or the left child of fence.
+ * Sizes are estimated from the size of the tree, halved at each split, so only the unsplit spliterator is SIZED.
+ * Elements made from keys are reported DISTINCT and SORTED, other elements are only ORDERED.
+ * The tree must not be changed structurally while a spliterator over it is in use.
+ * @param <E> type of the elements made from the nodes.
+ */
+class TreeSpliterator<T extends Comparable<T>, V, E> implements Spliterator<E> {
+    private final RedBlackTree<T, V> tree;
+    private final Function<INode<T, V>, E> element;
+    private final Comparator<? super E> order;
+    private final boolean sorted;
+    private INode<T, V> current;
+    //null stands for the end of the tree
+    private final INode<T, V> fence;
+    //0 before the first split, 1 after splitting off a prefix, -1 for a prefix split off
+    private int side;
+    private long estimate;
+
+    /**
+     * @param element makes the element reported for a node.
+     * @param sorted whether the elements are distinct and sorted in the order of their keys.
+     * @param order the order of sorted elements, or null if they are keys in their natural ordering.
+     */
+    TreeSpliterator(RedBlackTree<T, V> tree, Function<INode<T, V>, E> element, boolean sorted, Comparator<? super E> order) {
+        this(tree, element, sorted, order, tree.firstNode(), null, 0, tree.getSize());
+    }
+
+    private TreeSpliterator(RedBlackTree<T, V> tree, Function<INode<T, V>, E> element, boolean sorted,
+                            Comparator<? super E> order, INode<T, V> current, INode<T, V> fence, int side, long estimate) {
+        this.tree = tree;
+        this.element = element;
+        this.sorted = sorted;
+        this.order = order;
+        this.current = current;
+        this.fence = fence;
+        this.side = side;
+        this.estimate = estimate;
+    }
+
+    private static <T extends Comparable<T>, V> INode<T, V> real(INode<T, V> node) {
+        return node == null || node.isNull() ? null : node;
+    }
+
+    @Override
+    public Spliterator<E> trySplit() {
+        INode<T, V> e = current, f = fence;
+        INode<T, V> s = null;
+        if (e != null && e != f) {
+            if (side == 0)
+                s = real(tree.getRoot());
+            else if (side > 0)
+                s = real(e.getRightChild());
+            else if (f != null)
+                s = real(f.getLeftChild());
+        }
+        if (s == null || s == e || s == f || tree.compare(e.getKey(), s.getKey()) >= 0)
+            return null;
+        side = 1;
+        estimate >>>= 1;
+        current = s;
+        return new TreeSpliterator<>(tree, element, sorted, order, e, s, -1, estimate);
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super E> action) {
+        if (action == null)
+            throw new RuntimeErrorException(new Error());
+        INode<T, V> e = current;
+        if (e == null || e == fence)
+            return false;
+        current = tree.successor(e);
+        action.accept(element.apply(e));
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super E> action) {
+        if (action == null)
+            throw new RuntimeErrorException(new Error());
+        INode<T, V> e = current, f = fence;
+        current = f;
+        for (; e != null && e != f; e = tree.successor(e))
+            action.accept(element.apply(e));
+    }
+
+    @Override
+    public long estimateSize() {
+        return estimate;
+    }
+
+    @Override
+    public int characteristics() {
+        return (side == 0 ? Spliterator.SIZED : 0) | (sorted ? Spliterator.DISTINCT | Spliterator.SORTED : 0)
+                | Spliterator.ORDERED;
+    }
+
+    @Override
+    public Comparator<? super E> getComparator() {
+        if (!sorted)
+            throw new IllegalStateException();
+        return order;
+    }
+}
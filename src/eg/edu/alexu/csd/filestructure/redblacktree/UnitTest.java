@@ -1,6 +1,7 @@
 package eg.edu.alexu.csd.filestructure.redblacktree;
 
 import java.lang.reflect.Field;
+import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -16,7 +17,9 @@ import java.util.Map.Entry;
 import java.util.Queue;
 import java.util.Random;
 import java.util.Set;
+import java.util.Spliterator;
 import java.util.TreeMap;
+import java.util.stream.Collectors;
 
 import javax.management.RuntimeErrorException;
 
@@ -1686,6 +1689,1225 @@ public class UnitTest {
 
 	}
 
+	/**
+	 * Test long keyed treemap against java's treemap.
+	 */
+	@Test
+	public void testLongTreeMap() {
+
+		ILongTreeMap<String> treemap = new LongTreeMap<>();
+
+		try {
+			TreeMap<Long, String> t = new TreeMap<>();
+			Random r = new Random();
+			for (int i = 0; i < 10000; i++) {
+				long key = r.nextInt(100000) - 50000L;
+				if (i % 3 == 0) {
+					Assert.assertEquals(t.remove(key) != null, treemap.remove(key));
+				} else {
+					Assert.assertEquals(t.put(key, "soso" + i), treemap.put(key, "soso" + i));
+				}
+			}
+			Assert.assertEquals(t.size(), treemap.size());
+			long key = r.nextInt(100000) - 50000L;
+			Assert.assertEquals(t.put(key, "toto"), treemap.asTreeMap().put(key, "toto"));
+			IntTreeMap<String> ints = new IntTreeMap<>();
+			Assert.assertNull(ints.put(7, "soso"));
+			Assert.assertEquals("soso", ints.asTreeMap().put(7, "toto"));
+			Assert.assertEquals("toto", ints.put(7, "soso"));
+			Assert.assertEquals(t.ceilingEntry(key), treemap.ceilingEntry(key));
+			Assert.assertEquals(t.floorEntry(key), treemap.floorEntry(key));
+			Assert.assertEquals(t.get(key), treemap.get(key));
+			Assert.assertEquals(t.firstKey().longValue(), treemap.firstKey());
+			Assert.assertEquals(new ArrayList<>(t.entrySet()), new ArrayList<>(treemap.entrySet()));
+			Assert.assertEquals(t.pollLastEntry(), treemap.asTreeMap().pollLastEntry());
+		} catch (Throwable e) {
+			TestRunner.fail("Fail in long treemap", e);
+		}
+	}
+
+	/**
+	 * Test int keyed tree insertion and deletion.
+	 */
+	@Test
+	public void testIntRedBlackTree() {
+
+		IIntRedBlackTree<String> redBlackTree = new IntRedBlackTree<>();
+
+		try {
+			Random r = new Random();
+			HashMap<Integer, String> map = new HashMap<>();
+			for (int i = 0; i < 10000; i++) {
+				int key = r.nextInt(1000);
+				if (i % 4 == 0) {
+					Assert.assertEquals(map.remove(key) != null, redBlackTree.delete(key));
+				} else {
+					map.put(key, "toto" + key);
+					redBlackTree.insert(key, "toto" + key);
+				}
+			}
+			Assert.assertEquals(map.size(), redBlackTree.getSize());
+			for (int key = 0; key < 1000; key++)
+				Assert.assertEquals(map.get(key), redBlackTree.search(key));
+		} catch (Throwable e) {
+			TestRunner.fail("Fail in int red black tree", e);
+		}
+	}
+
+	/**
+	 * Test the array backed tree with random insertions and deletions.
+	 */
+	@Test
+	public void testArrayBackedTree() {
+
+		IRedBlackTree<Integer, String> redBlackTree = RedBlackTrees.arrayBacked();
+
+		try {
+			Random r = new Random();
+			HashMap<Integer, String> map = new HashMap<>();
+			for (int i = 0; i < 100000; i++) {
+				int key = r.nextInt(10000);
+				if (i % 3 == 0) {
+					Assert.assertEquals(map.remove(key) != null, redBlackTree.delete(key));
+				} else {
+					map.put(key, "toto" + key);
+					redBlackTree.insert(key, "toto" + key);
+				}
+			}
+			for (int key = 0; key < 10000; key++)
+				Assert.assertEquals(map.get(key), redBlackTree.search(key));
+			Assert.assertTrue(verifyProps(redBlackTree.getRoot()));
+		} catch (Throwable e) {
+			TestRunner.fail("Fail in array backed tree", e);
+		}
+	}
+
+	/**
+	 * Test the off-heap tree with long keys and values.
+	 */
+	@Test
+	public void testOffHeapTree() {
+
+		IOffHeapRedBlackTree<Long, Long> redBlackTree = RedBlackTrees.offHeap(FixedWidthCodec.LONG, FixedWidthCodec.LONG);
+
+		try {
+			Random r = new Random();
+			HashMap<Long, Long> map = new HashMap<>();
+			for (int i = 0; i < 100000; i++) {
+				long key = r.nextInt(10000);
+				if (i % 3 == 0) {
+					Assert.assertEquals(map.remove(key) != null, redBlackTree.delete(key));
+				} else {
+					map.put(key, key * i);
+					redBlackTree.insert(key, key * i);
+				}
+			}
+			Assert.assertEquals(map.size(), redBlackTree.getSize());
+			for (long key = 0; key < 10000; key++)
+				Assert.assertEquals(map.get(key), redBlackTree.search(key));
+			//the setters write through to the records
+			INode<Long, Long> root = redBlackTree.getRoot();
+			root.setValue(-1L);
+			Assert.assertEquals(Long.valueOf(-1), redBlackTree.search(root.getKey()));
+			INode<Long, Long> left = root.getLeftChild();
+			root.setLeftChild(null);
+			Assert.assertFalse(redBlackTree.contains(left.getKey()));
+			root.setLeftChild(left);
+			Assert.assertTrue(redBlackTree.contains(left.getKey()));
+			Assert.assertEquals(root, left.getParent());
+			left.setColor(!left.getColor());
+			left.setColor(!left.getColor());
+			Assert.assertEquals(redBlackTree.getRoot().getColor(), INode.BLACK);
+			map.put(root.getKey(), -1L);
+			for (long key = 0; key < 10000; key++)
+				Assert.assertEquals(map.get(key), redBlackTree.search(key));
+			try {
+				root.setValue(null);
+				Assert.fail();
+			} catch (RuntimeErrorException e) {
+			}
+			redBlackTree.clear();
+			Assert.assertTrue(redBlackTree.isEmpty());
+			redBlackTree.insert(5L, 50L);
+			Assert.assertEquals(Long.valueOf(50), redBlackTree.search(5L));
+			redBlackTree.close();
+		} catch (Throwable e) {
+			TestRunner.fail("Fail in off-heap tree", e);
+		}
+	}
+
+	/**
+	 * Test reopening a memory-mapped tree file.
+	 */
+	@Test
+	public void testMappedTreeReopen() {
+
+		try {
+			java.nio.file.Path file = java.nio.file.Files.createTempFile("tree", ".rbt");
+			java.nio.file.Files.delete(file);
+			Random r = new Random();
+			HashMap<Long, Long> map = new HashMap<>();
+			IMappedRedBlackTree<Long, Long> redBlackTree = RedBlackTrees.mapped(file, FixedWidthCodec.LONG, FixedWidthCodec.LONG);
+			//an empty tree only has its header in the file
+			Assert.assertTrue(java.nio.file.Files.size(file) < 1 << 10);
+			for (int i = 0; i < 100000; i++) {
+				long key = r.nextInt(1000000);
+				map.put(key, (long) i);
+				redBlackTree.insert(key, (long) i);
+			}
+			redBlackTree.close();
+			//the mapped segments double from one chunk, far below the size of a full segment
+			Assert.assertTrue(java.nio.file.Files.size(file) < 1 << 24);
+			redBlackTree = RedBlackTrees.mapped(file, FixedWidthCodec.LONG, FixedWidthCodec.LONG);
+			Assert.assertEquals(map.size(), redBlackTree.getSize());
+			for (Map.Entry<Long, Long> entry : map.entrySet())
+				Assert.assertEquals(entry.getValue(), redBlackTree.search(entry.getKey()));
+			redBlackTree.close();
+			java.nio.file.Files.delete(file);
+		} catch (Throwable e) {
+			TestRunner.fail("Fail in mapped tree", e);
+		}
+	}
+
+	/**
+	 * Test a treemap ordered by a comparator.
+	 */
+	@Test
+	public void testTreeMapWithComparator() {
+
+		ITreeMap<Integer, String> treemap = new eg.edu.alexu.csd.filestructure.redblacktree.TreeMap<Integer, String>(Comparator.reverseOrder());
+
+		try {
+			TreeMap<Integer, String> t = new TreeMap<>(Comparator.reverseOrder());
+			Random r = new Random();
+			for (int i = 0; i < 10000; i++) {
+				int key = r.nextInt(100000);
+				t.put(key, "soso" + key);
+				treemap.put(key, "soso" + key);
+			}
+			Assert.assertEquals(t.firstEntry(), treemap.firstEntry());
+			Assert.assertEquals(t.lastEntry(), treemap.lastEntry());
+			Assert.assertEquals(new ArrayList<>(t.entrySet()), new ArrayList<>(treemap.entrySet()));
+			int key = r.nextInt(100000);
+			Assert.assertEquals(t.get(key), treemap.get(key));
+			Assert.assertEquals(new ArrayList<>(t.headMap(key).entrySet()), treemap.headMap(key));
+			//reverse order disagrees with compareTo everywhere, so a lookup falling back to it lands on the wrong side
+			for (int i = 0; i < 1000; i++) {
+				key = r.nextInt(100000);
+				Assert.assertEquals(t.ceilingKey(key), treemap.ceilingKey(key));
+				Assert.assertEquals(t.floorKey(key), treemap.floorKey(key));
+				Assert.assertEquals(t.containsKey(key), treemap.containsKey(key));
+				Assert.assertEquals(t.remove(key) != null, treemap.remove(key));
+			}
+			Assert.assertEquals(new ArrayList<>(t.entrySet()), new ArrayList<>(treemap.entrySet()));
+			Assert.assertEquals(t.pollFirstEntry(), treemap.pollFirstEntry());
+		} catch (Throwable e) {
+			TestRunner.fail("Fail in treemap with comparator", e);
+		}
+	}
+
+	/**
+	 * Test rank, select and countInRange against a sorted list of keys.
+	 */
+	@Test
+	public void testRankAndSelect() {
+
+		eg.edu.alexu.csd.filestructure.redblacktree.TreeMap<Integer, String> treemap = new eg.edu.alexu.csd.filestructure.redblacktree.TreeMap<>(null);
+
+		try {
+			TreeMap<Integer, String> t = new TreeMap<>();
+			Random r = new Random();
+			for (int i = 0; i < 10000; i++) {
+				int key = r.nextInt(100000);
+				if (i % 5 == 0) {
+					t.remove(key);
+					treemap.remove(key);
+				} else {
+					t.put(key, "soso" + key);
+					treemap.put(key, "soso" + key);
+				}
+			}
+			ArrayList<Integer> keys = new ArrayList<>(t.keySet());
+			for (int i = 0; i < keys.size(); i += 37) {
+				Assert.assertEquals(keys.get(i), treemap.select(i).getKey());
+				Assert.assertEquals(i, treemap.rank(keys.get(i)));
+			}
+			int lo = r.nextInt(50000), hi = lo + r.nextInt(50000);
+			Assert.assertEquals(t.subMap(lo, hi).size(), treemap.countInRange(lo, hi));
+			Assert.assertEquals(t.headMap(lo).size(), treemap.rank(lo));
+		} catch (Throwable e) {
+			TestRunner.fail("Fail in rank and select", e);
+		}
+	}
+
+	/**
+	 * Test building a tree from sorted input.
+	 */
+	@Test
+	public void testBuildFromSorted() {
+
+		RedBlackTree<Integer, String> redBlackTree = new RedBlackTree<>();
+
+		try {
+			TreeMap<Integer, String> t = new TreeMap<>();
+			Random r = new Random();
+			for (int i = 0; i < 10000; i++) {
+				int key = r.nextInt(100000);
+				t.put(key, "soso" + key);
+			}
+			redBlackTree.insert(-1, "old");
+			redBlackTree.buildFromSorted(t.entrySet().iterator(), t.size());
+			Assert.assertTrue(verifyProps(redBlackTree.getRoot()));
+			Assert.assertEquals(t.size(), redBlackTree.getSize());
+			Assert.assertNull(redBlackTree.search(-1));
+			for (Map.Entry<Integer, String> entry : t.entrySet())
+				Assert.assertEquals(entry.getValue(), redBlackTree.search(entry.getKey()));
+			try {
+				redBlackTree.buildFromSorted(new Integer[]{1, 3, 2}, new String[]{"a", "b", "c"});
+				Assert.fail();
+			} catch (RuntimeErrorException ex) {
+			}
+			Assert.assertEquals(t.size(), redBlackTree.getSize());
+		} catch (Throwable e) {
+			TestRunner.fail("Fail in building from sorted input", e);
+		}
+	}
+
+	/**
+	 * Test inserting unsorted batches, merged into a larger tree and rebuilding a smaller one.
+	 */
+	@Test
+	public void testInsertAll() {
+
+		RedBlackTree<Integer, String> redBlackTree = new RedBlackTree<>();
+
+		try {
+			TreeMap<Integer, String> t = new TreeMap<>();
+			Random r = new Random();
+			for (int i = 0; i < 20000; i++) {
+				int key = r.nextInt(100000);
+				redBlackTree.insert(key, "soso" + key);
+				t.put(key, "soso" + key);
+			}
+			for (int batchSize : new int[]{100, 50000}) {
+				List<Map.Entry<Integer, String>> batch = new ArrayList<>();
+				int inserted = 0, updated = 0;
+				Set<Integer> seen = new HashSet<>();
+				for (int i = 0; i < batchSize; i++) {
+					int key = r.nextInt(200000);
+					batch.add(new AbstractMap.SimpleEntry<>(key, "batch" + i));
+					//repeated keys in the batch are counted once, as the value of the last one is kept
+					if (seen.add(key)) {
+						if (t.containsKey(key))
+							updated++;
+						else
+							inserted++;
+					}
+					t.put(key, "batch" + i);
+				}
+				InsertAllResult result = redBlackTree.insertAll(batch);
+				Assert.assertTrue(verifyProps(redBlackTree.getRoot()));
+				Assert.assertEquals(t.size(), redBlackTree.getSize());
+				Assert.assertEquals(inserted, result.getInserted());
+				Assert.assertEquals(updated, result.getUpdated());
+				for (Map.Entry<Integer, String> entry : t.entrySet())
+					Assert.assertEquals(entry.getValue(), redBlackTree.search(entry.getKey()));
+				for (int i = 0; i < t.size(); i += 97)
+					Assert.assertEquals(i, redBlackTree.rank(redBlackTree.select(i).getKey()));
+			}
+		} catch (Throwable e) {
+			TestRunner.fail("Fail in inserting a batch", e);
+		}
+	}
+
+	/**
+	 * Test removing a key range, splitting a tree and joining trees back.
+	 */
+	@Test
+	public void testSplitJoinAndRemoveRange() {
+
+		RedBlackTree<Integer, String> redBlackTree = new RedBlackTree<>();
+
+		try {
+			TreeMap<Integer, String> t = new TreeMap<>();
+			Random r = new Random();
+			for (int i = 0; i < 20000; i++) {
+				int key = r.nextInt(100000);
+				redBlackTree.insert(key, "soso" + key);
+				t.put(key, "soso" + key);
+			}
+			int expected = t.subMap(20000, 40000).size();
+			t.subMap(20000, 40000).clear();
+			Assert.assertEquals(expected, redBlackTree.removeRange(20000, 40000));
+			Assert.assertTrue(verifyProps(redBlackTree.getRoot()));
+			Assert.assertEquals(t.size(), redBlackTree.getSize());
+			Assert.assertEquals(0, redBlackTree.countInRange(20000, 40000));
+
+			RedBlackTree<Integer, String> upper = redBlackTree.splitAt(30000);
+			Assert.assertTrue(verifyProps(redBlackTree.getRoot()));
+			Assert.assertTrue(verifyProps(upper.getRoot()));
+			Assert.assertEquals(t.headMap(30000).size(), redBlackTree.getSize());
+			Assert.assertEquals(t.tailMap(30000).size(), upper.getSize());
+			for (Map.Entry<Integer, String> entry : t.tailMap(30000).entrySet())
+				Assert.assertEquals(entry.getValue(), upper.search(entry.getKey()));
+
+			RedBlackTree<Integer, String> joined = RedBlackTree.join(redBlackTree, 30000, "pivot", upper);
+			Assert.assertTrue(verifyProps(joined.getRoot()));
+			Assert.assertEquals(t.size() + 1, joined.getSize());
+			Assert.assertTrue(redBlackTree.isEmpty() && upper.isEmpty());
+			Assert.assertEquals("pivot", joined.search(30000));
+
+			RedBlackTree<Integer, String> tail = joined.splitAt(90000);
+			joined.concat(tail);
+			Assert.assertTrue(verifyProps(joined.getRoot()));
+			Assert.assertEquals(t.size() + 1, joined.getSize());
+			try {
+				RedBlackTree<Integer, String> low = new RedBlackTree<>();
+				low.insert(95000, "x");
+				joined.concat(low);
+				Assert.fail();
+			} catch (RuntimeErrorException ex) {
+			}
+		} catch (Throwable e) {
+			TestRunner.fail("Fail in splitting and joining", e);
+		}
+	}
+
+	/**
+	 * Test union, intersection and difference of maps large enough to run on the fork join pool.
+	 */
+	@Test
+	public void testSetOperations() {
+
+		try {
+			Random r = new Random();
+			for (int operation = 0; operation < 3; operation++) {
+				eg.edu.alexu.csd.filestructure.redblacktree.TreeMap<Integer, String> a = new eg.edu.alexu.csd.filestructure.redblacktree.TreeMap<>(null);
+				eg.edu.alexu.csd.filestructure.redblacktree.TreeMap<Integer, String> b = new eg.edu.alexu.csd.filestructure.redblacktree.TreeMap<>(null);
+				TreeMap<Integer, String> t = new TreeMap<>();
+				TreeMap<Integer, String> other = new TreeMap<>();
+				for (int i = 0; i < 50000; i++) {
+					int key = r.nextInt(200000);
+					a.put(key, "a" + key);
+					t.put(key, "a" + key);
+					key = r.nextInt(200000);
+					b.put(key, "b" + key);
+					other.put(key, "b" + key);
+				}
+				if (operation == 0) {
+					a.union(b);
+					t.putAll(other);
+				} else if (operation == 1) {
+					a.intersection(b);
+					t.keySet().retainAll(other.keySet());
+				} else {
+					a.difference(b);
+					t.keySet().removeAll(other.keySet());
+				}
+				Assert.assertEquals(0, b.size());
+				Assert.assertEquals(t.size(), a.size());
+				for (Map.Entry<Integer, String> entry : t.entrySet())
+					Assert.assertEquals(entry.getValue(), a.get(entry.getKey()));
+			}
+		} catch (Throwable e) {
+			TestRunner.fail("Fail in set operations", e);
+		}
+	}
+
+	/**
+	 * Test that old versions of a persistent tree stay readable and the history answers reads as of a version.
+	 */
+	@Test
+	public void testPersistentTree() {
+
+		try {
+			PersistentRedBlackTree<Integer, String> tree = new PersistentRedBlackTree<>();
+			VersionHistory<Integer, String> history = new VersionHistory<>(50);
+			List<Long> versions = new ArrayList<>();
+			List<TreeMap<Integer, String>> snapshots = new ArrayList<>();
+			Random r = new Random();
+			TreeMap<Integer, String> t = new TreeMap<>();
+			for (int i = 0; i < 10000; i++) {
+				int key = r.nextInt(1000);
+				if (r.nextInt(3) == 0) {
+					tree = tree.delete(key);
+					t.remove(key);
+				} else {
+					tree = tree.insert(key, "soso" + i);
+					t.put(key, "soso" + i);
+				}
+				if (i % 100 == 99) {
+					history.record(tree);
+					versions.add(tree.getVersion());
+					snapshots.add(new TreeMap<>(t));
+				}
+			}
+			Assert.assertEquals(50, history.size());
+			Assert.assertNull(history.asOf(versions.get(49)));
+			for (int i = 50; i < snapshots.size(); i++) {
+				PersistentRedBlackTree<Integer, String> old = history.asOf(versions.get(i));
+				TreeMap<Integer, String> snapshot = snapshots.get(i);
+				Assert.assertEquals(snapshot.size(), old.getSize());
+				for (int key = 0; key < 1000; key++) {
+					Assert.assertEquals(snapshot.get(key), old.search(key));
+					Map.Entry<Integer, String> ceiling = old.ceilingEntry(key);
+					Assert.assertEquals(snapshot.ceilingKey(key), ceiling == null ? null : ceiling.getKey());
+					Map.Entry<Integer, String> floor = old.floorEntry(key);
+					Assert.assertEquals(snapshot.floorKey(key), floor == null ? null : floor.getKey());
+				}
+			}
+		} catch (Throwable e) {
+			TestRunner.fail("Fail in persistent tree", e);
+		}
+	}
+
+	/**
+	 * Test a concurrent map written by several threads while others read it.
+	 */
+	@Test
+	public void testConcurrentTreeMap() {
+
+		try {
+			IConcurrentTreeMap<Integer, String> map = RedBlackTrees.concurrentTreeMap();
+			int writers = 4, keysPerWriter = 5000;
+			List<Thread> threads = new ArrayList<>();
+			List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+			for (int w = 0; w < writers; w++) {
+				int first = w * keysPerWriter;
+				threads.add(new Thread(() -> {
+					for (int key = first; key < first + keysPerWriter; key++)
+						map.put(key, "soso" + key);
+					for (int key = first; key < first + keysPerWriter; key += 2)
+						map.remove(key);
+				}));
+			}
+			for (int reader = 0; reader < 2; reader++) {
+				threads.add(new Thread(() -> {
+					try {
+						for (int i = 0; i < 20000; i += 100) {
+							PersistentRedBlackTree<Integer, String> snapshot = map.snapshot();
+							Map.Entry<Integer, String> ceiling = snapshot.ceilingEntry(i);
+							if (ceiling != null)
+								Assert.assertEquals("soso" + ceiling.getKey(), ceiling.getValue());
+							Assert.assertEquals(snapshot.getSize(), snapshot.entries().size());
+						}
+					} catch (Throwable e) {
+						failures.add(e);
+					}
+				}));
+			}
+			for (Thread thread : threads)
+				thread.start();
+			for (Thread thread : threads)
+				thread.join();
+			Assert.assertTrue(failures.isEmpty());
+			Assert.assertEquals(writers * keysPerWriter / 2, map.size());
+			for (int key = 0; key < writers * keysPerWriter; key++)
+				Assert.assertEquals(key % 2 == 0 ? null : "soso" + key, map.get(key));
+			PersistentRedBlackTree<Integer, String> before = map.snapshot();
+			Assert.assertEquals("soso1", map.pollFirstEntry().getValue());
+			Assert.assertTrue(before.contains(1));
+			Assert.assertFalse(map.containsKey(1));
+			Map<Integer, String> batch = new HashMap<>();
+			for (int key = 0; key < 100; key++)
+				batch.put(key, "batch" + key);
+			int size = map.size();
+			long version = map.snapshot().getVersion();
+			map.putAll(batch);
+			//the whole batch is one update
+			Assert.assertEquals(version + 1, map.snapshot().getVersion());
+			Assert.assertEquals(size + 51, map.size());
+			Assert.assertEquals("batch1", map.get(1));
+			Assert.assertEquals("batch99", map.get(99));
+			//clearing moves on to a later version, so snapshots can still be recorded in order
+			VersionHistory<Integer, String> history = new VersionHistory<>(4);
+			history.record(map.snapshot());
+			version = map.snapshot().getVersion();
+			map.clear();
+			Assert.assertEquals(version + 1, map.snapshot().getVersion());
+			Assert.assertEquals(0, map.size());
+			map.clear();
+			Assert.assertEquals(version + 1, map.snapshot().getVersion());
+			map.put(1, "soso1");
+			history.record(map.snapshot());
+			Assert.assertEquals(size + 51, history.asOf(version + 1).getSize());
+			Assert.assertEquals(1, history.asOf(version + 2).getSize());
+		} catch (Throwable e) {
+			TestRunner.fail("Fail in concurrent tree map", e);
+		}
+	}
+
+	/**
+	 * Test optimistic lookups on a synchronized map while another thread keeps rotating the tree.
+	 */
+	@Test
+	public void testSynchronizedTreeMap() {
+
+		try {
+			ITreeMap<Integer, String> map = RedBlackTrees.synchronizedTreeMap(new eg.edu.alexu.csd.filestructure.redblacktree.TreeMap<Integer, String>(null));
+			IRedBlackTree<Integer, String> tree = RedBlackTrees.synchronizedTree(new RedBlackTree<Integer, String>());
+			for (int key = 0; key < 10000; key += 2) {
+				map.put(key, "soso" + key);
+				tree.insert(key, "soso" + key);
+			}
+			List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+			Thread writer = new Thread(() -> {
+				Random r = new Random();
+				for (int i = 0; i < 50000; i++) {
+					int key = 2 * r.nextInt(5000) + 1;
+					if (r.nextBoolean()) {
+						map.put(key, "soso" + key);
+						tree.insert(key, "soso" + key);
+					} else {
+						map.remove(key);
+						tree.delete(key);
+					}
+				}
+			});
+			Thread reader = new Thread(() -> {
+				try {
+					Random r = new Random();
+					for (int i = 0; i < 100000; i++) {
+						int key = 2 * r.nextInt(5000);
+						Assert.assertEquals("soso" + key, map.get(key));
+						Assert.assertTrue(tree.contains(key));
+						Assert.assertEquals(Integer.valueOf(0), map.firstKey());
+					}
+				} catch (Throwable e) {
+					failures.add(e);
+				}
+			});
+			writer.start();
+			reader.start();
+			writer.join();
+			reader.join();
+			Assert.assertTrue(failures.isEmpty());
+			Assert.assertEquals(map.size(), map.entrySet().size());
+		} catch (Throwable e) {
+			TestRunner.fail("Fail in synchronized tree map", e);
+		}
+	}
+
+	/**
+	 * Test that a sharded map splits its key space as it grows and keeps ordered operations ordered across shards.
+	 */
+	@Test
+	public void testShardedTreeMap() {
+
+		try {
+			ShardedTreeMap<Integer, String> map = new ShardedTreeMap<>(8);
+			TreeMap<Integer, String> t = new TreeMap<>();
+			List<Thread> writers = new ArrayList<>();
+			for (int w = 0; w < 4; w++) {
+				int offset = w;
+				writers.add(new Thread(() -> {
+					Random r = new Random();
+					for (int i = 0; i < 20000; i++) {
+						int key = 4 * r.nextInt(100000) + offset;
+						map.put(key, "soso" + key);
+					}
+				}));
+			}
+			for (Thread writer : writers)
+				writer.start();
+			for (Thread writer : writers)
+				writer.join();
+			for (Map.Entry<Integer, String> entry : map.entrySet())
+				t.put(entry.getKey(), entry.getValue());
+			Assert.assertEquals(t.size(), map.size());
+			Assert.assertTrue(map.shardCount() > 1);
+			Assert.assertEquals(new ArrayList<>(t.keySet()), new ArrayList<>(map.keySet()));
+			Random r = new Random();
+			for (int i = 0; i < 1000; i++) {
+				int key = r.nextInt(400000);
+				Assert.assertEquals(t.get(key), map.get(key));
+				Assert.assertEquals(t.ceilingKey(key), map.ceilingEntry(key) == null ? null : map.ceilingEntry(key).getKey());
+				Assert.assertEquals(t.floorKey(key), map.floorEntry(key) == null ? null : map.floorEntry(key).getKey());
+			}
+			Assert.assertEquals(t.headMap(200000).size(), map.headMap(200000).size());
+			Assert.assertEquals(t.firstKey(), map.firstKey());
+			Assert.assertEquals(t.lastKey(), map.lastKey());
+			Assert.assertEquals(t.pollFirstEntry().getKey(), map.pollFirstEntry().getKey());
+		} catch (Throwable e) {
+			TestRunner.fail("Fail in sharded tree map", e);
+		}
+	}
+
+	/**
+	 * Test that lookups on an optimistic tree see every key that is never deleted while writers rotate around it.
+	 */
+	@Test
+	public void testOptimisticTree() {
+
+		try {
+			IRedBlackTree<Integer, String> tree = RedBlackTrees.optimisticTree();
+			for (int key = 0; key < 10000; key += 2)
+				tree.insert(key, "soso" + key);
+			List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+			List<Thread> threads = new ArrayList<>();
+			for (int w = 0; w < 4; w++) {
+				threads.add(new Thread(() -> {
+					Random r = new Random();
+					for (int i = 0; i < 50000; i++) {
+						int key = 2 * r.nextInt(5000) + 1;
+						if (r.nextBoolean())
+							tree.insert(key, "soso" + key);
+						else
+							tree.delete(key);
+						//even keys are only ever updated in place
+						tree.insert(key - 1, "soso" + (key - 1));
+					}
+				}));
+			}
+			for (int t = 0; t < 2; t++) {
+				threads.add(new Thread(() -> {
+					try {
+						Random r = new Random();
+						for (int i = 0; i < 100000; i++) {
+							int key = 2 * r.nextInt(5000);
+							Assert.assertEquals("soso" + key, tree.search(key));
+						}
+					} catch (Throwable e) {
+						failures.add(e);
+					}
+				}));
+			}
+			for (Thread thread : threads)
+				thread.start();
+			for (Thread thread : threads)
+				thread.join();
+			Assert.assertTrue(failures.isEmpty());
+			Assert.assertTrue(verifyProps(tree.getRoot()));
+			int live = 0;
+			for (int key = 0; key < 10000; key++)
+				if (tree.contains(key))
+					live++;
+			Assert.assertEquals(live, ((OptimisticRedBlackTree<Integer, String>) tree).getSize());
+			for (int key = 0; key < 10000; key += 2)
+				Assert.assertTrue(tree.delete(key));
+			for (int key = 1; key < 10000; key += 2)
+				tree.delete(key);
+			Assert.assertTrue(tree.isEmpty());
+		} catch (Throwable e) {
+			TestRunner.fail("Fail in optimistic tree", e);
+		}
+	}
+
+	/**
+	 * Test that puts and removes combined from many threads all land in the map.
+	 */
+	@Test
+	public void testFlatCombiningTreeMap() {
+
+		try {
+			ITreeMap<Integer, String> map = RedBlackTrees.flatCombiningTreeMap(new eg.edu.alexu.csd.filestructure.redblacktree.TreeMap<Integer, String>(null));
+			List<Thread> writers = new ArrayList<>();
+			for (int w = 0; w < 8; w++) {
+				int offset = w;
+				writers.add(new Thread(() -> {
+					for (int key = offset; key < 80000; key += 8)
+						map.put(key, "soso" + key);
+					for (int key = offset; key < 80000; key += 16)
+						map.remove(key);
+				}));
+			}
+			for (Thread writer : writers)
+				writer.start();
+			for (Thread writer : writers)
+				writer.join();
+			Assert.assertEquals(40000, map.size());
+			for (int key = 0; key < 80000; key++)
+				Assert.assertEquals(key % 16 < 8 ? null : "soso" + key, map.get(key));
+			Assert.assertFalse(map.remove(0));
+			try {
+				map.put(null, "soso");
+				Assert.fail();
+			} catch (RuntimeErrorException e) {
+			}
+		} catch (Throwable e) {
+			TestRunner.fail("Fail in flat combining tree map", e);
+		}
+	}
+
+	/**
+	 * Test that the entry, key and value views follow later changes of the map and keep equal values apart.
+	 */
+	@Test
+	public void testLiveViews() {
+
+		try {
+			eg.edu.alexu.csd.filestructure.redblacktree.TreeMap<Integer, String> treemap = new eg.edu.alexu.csd.filestructure.redblacktree.TreeMap<>(null);
+			Set<Map.Entry<Integer, String>> entries = treemap.entrySet();
+			Set<Integer> keys = treemap.keySet();
+			Collection<String> values = treemap.values();
+			TreeMap<Integer, String> t = new TreeMap<>();
+			Random r = new Random();
+			for (int i = 0; i < 1000; i++) {
+				int key = r.nextInt(10000);
+				treemap.put(key, "soso" + key % 10);
+				t.put(key, "soso" + key % 10);
+			}
+			Assert.assertEquals(new ArrayList<>(t.entrySet()), new ArrayList<>(entries));
+			Assert.assertEquals(new ArrayList<>(t.keySet()), new ArrayList<>(keys));
+			Assert.assertEquals(new ArrayList<>(t.values()), new ArrayList<>(values));
+			Assert.assertEquals(t.size(), values.size());
+			Assert.assertTrue(entries.contains(new AbstractMap.SimpleEntry<>(t.firstKey(), t.firstEntry().getValue())));
+			Assert.assertFalse(keys.contains("soso"));
+			Assert.assertTrue(values.contains("soso" + t.firstKey() % 10));
+			entries.iterator().next().setValue("toto");
+			Assert.assertEquals("toto", treemap.get(t.firstKey()));
+			treemap.clear();
+			Assert.assertTrue(entries.isEmpty());
+			Assert.assertFalse(values.iterator().hasNext());
+		} catch (Throwable e) {
+			TestRunner.fail("Fail in live views", e);
+		}
+	}
+
+	/**
+	 * Test that a cursor visits the keys in order both ways and seeks to the ceiling of a key.
+	 */
+	@Test
+	public void testCursor() {
+
+		try {
+			RedBlackTree<Integer, String> tree = new RedBlackTree<>();
+			TreeCursor<Integer, String> cursor = tree.cursor();
+			Assert.assertFalse(cursor.seekFirst());
+			Assert.assertFalse(cursor.next());
+			TreeMap<Integer, String> t = new TreeMap<>();
+			Random r = new Random();
+			for (int i = 0; i < 10000; i++) {
+				int key = r.nextInt(100000);
+				tree.insert(key, "soso" + key);
+				t.put(key, "soso" + key);
+			}
+			List<Integer> keys = new ArrayList<>();
+			for (boolean on = cursor.seekFirst(); on; on = cursor.next()) {
+				keys.add(cursor.key());
+				Assert.assertEquals("soso" + cursor.key(), cursor.value());
+			}
+			Assert.assertEquals(new ArrayList<>(t.keySet()), keys);
+			keys.clear();
+			for (boolean on = cursor.seekLast(); on; on = cursor.prev())
+				keys.add(cursor.key());
+			Assert.assertEquals(new ArrayList<>(t.descendingKeySet()), keys);
+			for (int i = 0; i < 1000; i++) {
+				int key = r.nextInt(110000);
+				Assert.assertEquals(t.ceilingKey(key) != null, cursor.seek(key));
+				if (cursor.valid()) {
+					Assert.assertEquals(t.ceilingKey(key), cursor.key());
+					Assert.assertEquals(t.higherKey(cursor.key()) != null, cursor.next());
+					if (cursor.valid())
+						Assert.assertEquals(t.higherKey(t.ceilingKey(key)), cursor.key());
+				}
+			}
+			Assert.assertTrue(tree.containsValue("soso" + t.lastKey()));
+			Assert.assertFalse(tree.containsValue("toto"));
+		} catch (Throwable e) {
+			TestRunner.fail("Fail in cursor", e);
+		}
+	}
+
+	/**
+	 * Test that parallel streams over the map see every mapping exactly once and in key order.
+	 */
+	@Test
+	public void testParallelStream() {
+
+		try {
+			eg.edu.alexu.csd.filestructure.redblacktree.TreeMap<Integer, String> treemap = new eg.edu.alexu.csd.filestructure.redblacktree.TreeMap<Integer, String>(Comparator.reverseOrder());
+			TreeMap<Integer, String> t = new TreeMap<>(Comparator.reverseOrder());
+			Random r = new Random();
+			for (int i = 0; i < 100000; i++) {
+				int key = r.nextInt(1000000);
+				treemap.put(key, "soso" + key);
+				t.put(key, "soso" + key);
+			}
+			Assert.assertEquals(new ArrayList<>(t.entrySet()), treemap.parallelStream().collect(Collectors.toList()));
+			Assert.assertEquals(new ArrayList<>(t.keySet()), treemap.keySet().parallelStream().collect(Collectors.toList()));
+			Assert.assertEquals(t.keySet().stream().mapToLong(Integer::longValue).sum(),
+					treemap.parallelStream().mapToLong(Map.Entry::getKey).sum());
+			Assert.assertEquals(t.size(), treemap.values().parallelStream().filter(value -> value.startsWith("soso")).count());
+			Spliterator<Map.Entry<Integer, String>> spliterator = treemap.entrySet().spliterator();
+			Assert.assertTrue(spliterator.hasCharacteristics(Spliterator.SIZED | Spliterator.SORTED | Spliterator.DISTINCT));
+			Assert.assertEquals(t.size(), spliterator.getExactSizeIfKnown());
+			Assert.assertNotNull(spliterator.trySplit());
+			Assert.assertEquals(t.firstKey(), treemap.stream().findFirst().get().getKey());
+			Assert.assertEquals(0, new eg.edu.alexu.csd.filestructure.redblacktree.TreeMap<Integer, String>(null).parallelStream().count());
+		} catch (Throwable e) {
+			TestRunner.fail("Fail in parallel stream", e);
+		}
+	}
+
+	/**
+	 * Test that head, tail and sub maps match java.util.TreeMap and do not grow across calls.
+	 */
+	@Test
+	public void testRangeQueries() {
+
+		try {
+			eg.edu.alexu.csd.filestructure.redblacktree.TreeMap<Integer, String> treemap = new eg.edu.alexu.csd.filestructure.redblacktree.TreeMap<>(null);
+			TreeMap<Integer, String> t = new TreeMap<>();
+			Random r = new Random();
+			for (int i = 0; i < 10000; i++) {
+				int key = r.nextInt(100000);
+				treemap.put(key, "soso" + key);
+				t.put(key, "soso" + key);
+			}
+			for (int i = 0; i < 1000; i++) {
+				int from = r.nextInt(110000) - 5000;
+				if (r.nextBoolean() && t.ceilingKey(from) != null)
+					from = t.ceilingKey(from);
+				int to = from + r.nextInt(2000);
+				boolean fromInclusive = r.nextBoolean(), toInclusive = r.nextBoolean();
+				Assert.assertEquals(new ArrayList<>(t.headMap(to, toInclusive).entrySet()), treemap.headMap(to, toInclusive));
+				Assert.assertEquals(new ArrayList<>(t.tailMap(from, fromInclusive).entrySet()), treemap.tailMap(from, fromInclusive));
+				Assert.assertEquals(new ArrayList<>(t.subMap(from, fromInclusive, to, toInclusive).entrySet()),
+						treemap.subMap(from, fromInclusive, to, toInclusive));
+			}
+			Assert.assertEquals(treemap.headMap(50000).size(), treemap.headMap(50000).size());
+			try {
+				treemap.subMap(10, true, 5, true);
+				Assert.fail();
+			} catch (RuntimeErrorException e) {
+			}
+		} catch (Throwable e) {
+			TestRunner.fail("Fail in range queries", e);
+		}
+	}
+
+	/**
+	 * Test ceiling, floor, higher and lower lookups against java.util.TreeMap, hits, misses and both ends included.
+	 */
+	@Test
+	public void testNavigation() {
+
+		try {
+			eg.edu.alexu.csd.filestructure.redblacktree.TreeMap<Integer, String> treemap = new eg.edu.alexu.csd.filestructure.redblacktree.TreeMap<>(null);
+			TreeMap<Integer, String> t = new TreeMap<>();
+			Assert.assertNull(treemap.ceilingKey(0));
+			Assert.assertNull(treemap.lowerEntry(0));
+			Random r = new Random();
+			for (int i = 0; i < 10000; i++) {
+				int key = r.nextInt(100000);
+				treemap.put(key, "soso" + key);
+				t.put(key, "soso" + key);
+			}
+			for (int i = 0; i < 10000; i++) {
+				int key = r.nextInt(110000) - 5000;
+				Assert.assertEquals(t.ceilingEntry(key), treemap.ceilingEntry(key));
+				Assert.assertEquals(t.floorEntry(key), treemap.floorEntry(key));
+				Assert.assertEquals(t.higherEntry(key), treemap.higherEntry(key));
+				Assert.assertEquals(t.lowerEntry(key), treemap.lowerEntry(key));
+				Assert.assertEquals(t.ceilingKey(key), treemap.ceilingKey(key));
+				Assert.assertEquals(t.floorKey(key), treemap.floorKey(key));
+				Assert.assertEquals(t.higherKey(key), treemap.higherKey(key));
+				Assert.assertEquals(t.lowerKey(key), treemap.lowerKey(key));
+			}
+			Assert.assertNull(treemap.higherKey(t.lastKey()));
+			Assert.assertNull(treemap.lowerKey(t.firstKey()));
+		} catch (Throwable e) {
+			TestRunner.fail("Fail in navigation", e);
+		}
+	}
+
+	/**
+	 * Test that the map used as a priority queue polls its keys in order while keys keep arriving.
+	 */
+	@Test
+	public void testPollAsPriorityQueue() {
+
+		try {
+			eg.edu.alexu.csd.filestructure.redblacktree.TreeMap<Integer, String> treemap = new eg.edu.alexu.csd.filestructure.redblacktree.TreeMap<>(null);
+			TreeMap<Integer, String> t = new TreeMap<>();
+			Random r = new Random();
+			for (int i = 0; i < 100000; i++) {
+				int key = r.nextInt(100000);
+				treemap.put(key, "soso" + key);
+				t.put(key, "soso" + key);
+				if (i % 3 == 0)
+					Assert.assertEquals(t.pollFirstEntry(), treemap.pollFirstEntry());
+				else if (i % 3 == 1)
+					Assert.assertEquals(t.pollLastEntry(), treemap.pollLastEntry());
+				Assert.assertEquals(t.isEmpty() ? null : t.firstKey(), treemap.firstKey());
+				Assert.assertEquals(t.lastEntry(), treemap.lastEntry());
+			}
+			while (!t.isEmpty())
+				Assert.assertEquals(t.pollFirstEntry(), treemap.pollFirstEntry());
+			Assert.assertNull(treemap.pollFirstEntry());
+			Assert.assertNull(treemap.pollLastEntry());
+			Assert.assertNull(treemap.firstEntry());
+			Assert.assertNull(treemap.lastKey());
+		} catch (Throwable e) {
+			TestRunner.fail("Fail in polling as a priority queue", e);
+		}
+	}
+
+	/**
+	 * Test put, compute, merge, putIfAbsent and replace against java.util.TreeMap, including removal by a null result.
+	 */
+	@Test
+	public void testComputeAndMerge() {
+
+		try {
+			eg.edu.alexu.csd.filestructure.redblacktree.TreeMap<Integer, Integer> treemap = new eg.edu.alexu.csd.filestructure.redblacktree.TreeMap<>(null);
+			TreeMap<Integer, Integer> t = new TreeMap<>();
+			Random r = new Random();
+			for (int i = 0; i < 100000; i++) {
+				int key = r.nextInt(1000);
+				Integer value = r.nextInt(10);
+				switch (r.nextInt(8)) {
+				case 0:
+					Assert.assertEquals(t.put(key, value), treemap.put(key, value));
+					break;
+				case 1:
+					Assert.assertEquals(t.putIfAbsent(key, value), treemap.putIfAbsent(key, value));
+					break;
+				case 2:
+					Assert.assertEquals(t.replace(key, value), treemap.replace(key, value));
+					break;
+				case 3:
+					Assert.assertEquals(t.replace(key, value, value + 1), treemap.replace(key, value, value + 1));
+					break;
+				case 4:
+					Assert.assertEquals(t.compute(key, (k, v) -> v == null ? value : v.equals(value) ? null : v + value),
+							treemap.compute(key, (k, v) -> v == null ? value : v.equals(value) ? null : v + value));
+					break;
+				case 5:
+					Assert.assertEquals(t.computeIfAbsent(key, k -> value == 0 ? null : value),
+							treemap.computeIfAbsent(key, k -> value == 0 ? null : value));
+					break;
+				case 6:
+					Assert.assertEquals(t.computeIfPresent(key, (k, v) -> v > 20 ? null : v * 2),
+							treemap.computeIfPresent(key, (k, v) -> v > 20 ? null : v * 2));
+					break;
+				default:
+					Assert.assertEquals(t.merge(key, value, (a, b) -> a + b > 30 ? null : a + b),
+							treemap.merge(key, value, (a, b) -> a + b > 30 ? null : a + b));
+				}
+			}
+			Assert.assertEquals(t.size(), treemap.size());
+			Assert.assertEquals(new ArrayList<>(t.entrySet()), new ArrayList<>(treemap.entrySet()));
+			Assert.assertEquals(t.firstKey(), treemap.firstKey());
+			Assert.assertEquals(t.lastKey(), treemap.lastKey());
+		} catch (Throwable e) {
+			TestRunner.fail("Fail in compute and merge", e);
+		}
+	}
+
+	/**
+	 * Test that removing through a cursor or an iterator keeps the scan on the next key and the tree balanced.
+	 */
+	@Test
+	public void testRemoveWhileScanning() {
+
+		try {
+			RedBlackTree<Integer, String> tree = new RedBlackTree<>();
+			eg.edu.alexu.csd.filestructure.redblacktree.TreeMap<Integer, String> treemap = new eg.edu.alexu.csd.filestructure.redblacktree.TreeMap<>(null);
+			TreeMap<Integer, String> t = new TreeMap<>();
+			Random r = new Random();
+			for (int i = 0; i < 50000; i++) {
+				int key = r.nextInt(100000);
+				tree.insert(key, "soso" + key);
+				treemap.put(key, "soso" + key);
+				t.put(key, "soso" + key);
+			}
+			TreeCursor<Integer, String> cursor = tree.cursor();
+			List<Integer> kept = new ArrayList<>();
+			for (boolean on = cursor.seekFirst(); on; ) {
+				if (cursor.key() % 3 == 0) {
+					Integer removed = cursor.key();
+					on = cursor.remove();
+					Assert.assertFalse(tree.contains(removed));
+					Assert.assertEquals(t.higherKey(removed), on ? cursor.key() : null);
+				} else {
+					kept.add(cursor.key());
+					on = cursor.next();
+				}
+			}
+			Assert.assertTrue(verifyProps(tree.getRoot()));
+			Assert.assertEquals(kept.size(), tree.getSize());
+			Assert.assertEquals(kept.get(0), tree.firstNode().getKey());
+			Assert.assertEquals(kept.get(kept.size() - 1), tree.lastNode().getKey());
+			treemap.values().removeIf(value -> value.endsWith("7"));
+			t.values().removeIf(value -> value.endsWith("7"));
+			Assert.assertEquals(new ArrayList<>(t.entrySet()), new ArrayList<>(treemap.entrySet()));
+			Assert.assertTrue(treemap.keySet().remove(t.firstKey()));
+			Assert.assertFalse(treemap.keySet().remove(t.pollFirstEntry().getKey()));
+			Iterator<Integer> keys = treemap.keySet().iterator();
+			try {
+				keys.remove();
+				Assert.fail();
+			} catch (IllegalStateException e) {
+			}
+			while (keys.hasNext()) {
+				keys.next();
+				keys.remove();
+			}
+			Assert.assertTrue(treemap.entrySet().isEmpty());
+			Assert.assertNull(treemap.firstKey());
+		} catch (Throwable e) {
+			TestRunner.fail("Fail in removing while scanning", e);
+		}
+	}
+
+	/**
+	 * Test that ceiling and floor lookups return null on a miss in every implementation of the map interface.
+	 */
+	@Test
+	public void testCeilingAndFloorMissInEveryMap() {
+
+		try {
+			List<ITreeMap<Integer, String>> maps = new ArrayList<>();
+			maps.add(new eg.edu.alexu.csd.filestructure.redblacktree.TreeMap<Integer, String>(null));
+			maps.add(RedBlackTrees.synchronizedTreeMap(new eg.edu.alexu.csd.filestructure.redblacktree.TreeMap<Integer, String>(null)));
+			maps.add(RedBlackTrees.flatCombiningTreeMap(new eg.edu.alexu.csd.filestructure.redblacktree.TreeMap<Integer, String>(null)));
+			maps.add(RedBlackTrees.concurrentTreeMap());
+			maps.add(RedBlackTrees.shardedTreeMap(4));
+			maps.add(new IntTreeMap<String>().asTreeMap());
+			for (ITreeMap<Integer, String> map : maps) {
+				String name = map.getClass().getSimpleName();
+				Assert.assertNull(name, map.ceilingKey(0));
+				Assert.assertNull(name, map.floorKey(0));
+				for (int key = 10; key <= 1000; key += 10)
+					map.put(key, "soso" + key);
+				Assert.assertNull(name, map.ceilingKey(1001));
+				Assert.assertNull(name, map.floorKey(9));
+				Assert.assertNull(name, map.ceilingEntry(1001));
+				Assert.assertNull(name, map.floorEntry(9));
+				Assert.assertEquals(name, Integer.valueOf(20), map.ceilingKey(11));
+				Assert.assertEquals(name, Integer.valueOf(10), map.floorKey(19));
+			}
+			ITreeMap<Long, String> longs = new LongTreeMap<String>().asTreeMap();
+			Assert.assertNull(longs.ceilingKey(0L));
+			longs.put(10L, "soso10");
+			Assert.assertNull(longs.ceilingKey(11L));
+			Assert.assertNull(longs.floorKey(9L));
+			Assert.assertEquals(Long.valueOf(10), longs.floorKey(11L));
+		} catch (Throwable e) {
+			TestRunner.fail("Fail in ceiling and floor misses", e);
+		}
+	}
+
+	/**
+	 * Test that increasing keys, which always land in the last shard, still end up spread evenly over every shard.
+	 */
+	@Test
+	public void testShardedTreeMapSkewedInput() {
+
+		try {
+			ShardedTreeMap<Integer, String> map = new ShardedTreeMap<>(4);
+			int n = 100000;
+			for (int key = 0; key < n; key++)
+				map.put(key, "soso" + key);
+			Assert.assertEquals(n, map.size());
+			Assert.assertEquals(4, map.shardCount());
+			Assert.assertTrue(map.largestShard() <= n / 4 + n / 8 + 1);
+			int expected = 0;
+			for (Integer key : map.keySet())
+				Assert.assertEquals(expected++, (int) key);
+		} catch (Throwable e) {
+			TestRunner.fail("Fail in sharded tree map with skewed input", e);
+		}
+	}
+
+	/**
+	 * Test that a comparator failing while a batch is sorted only fails the operation it was comparing.
+	 */
+	@Test
+	public void testFlatCombiningTreeMapFailingComparator() {
+
+		try {
+			Comparator<Integer> positive = (a, b) -> {
+				if (a < 0 || b < 0)
+					throw new RuntimeErrorException(new Error());
+				return a.compareTo(b);
+			};
+			ITreeMap<Integer, String> map = RedBlackTrees.flatCombiningTreeMap(new eg.edu.alexu.csd.filestructure.redblacktree.TreeMap<Integer, String>(positive));
+			//only the first writer counts, its count is read after the join
+			int[] rejected = {0};
+			List<Thread> writers = new ArrayList<>();
+			for (int w = 0; w < 8; w++) {
+				int offset = w;
+				writers.add(new Thread(() -> {
+					for (int key = offset; key < 40000; key += 8) {
+						map.put(key, "soso" + key);
+						if (offset == 0 && key % 64 == 0) {
+							try {
+								map.put(-1, "soso");
+							} catch (RuntimeErrorException e) {
+								rejected[0]++;
+							}
+						}
+					}
+				}));
+			}
+			for (Thread writer : writers)
+				writer.start();
+			for (Thread writer : writers)
+				writer.join(20000);
+			for (Thread writer : writers)
+				Assert.assertFalse(writer.isAlive());
+			Assert.assertEquals(40000 / 64, rejected[0]);
+			Assert.assertEquals(40000, map.size());
+			for (int key = 0; key < 40000; key++)
+				Assert.assertEquals("soso" + key, map.get(key));
+		} catch (Throwable e) {
+			TestRunner.fail("Fail in flat combining tree map with a failing comparator", e);
+		}
+	}
+
+	/**
+	 * Test that the nodes of an optimistic tree only hold keys that were not deleted and can be edited through the interface.
+	 */
+	@Test
+	public void testOptimisticTreeRoot() {
+
+		try {
+			IRedBlackTree<Integer, String> tree = RedBlackTrees.optimisticTree();
+			for (int key = 0; key < 100; key++)
+				tree.insert(key, "soso" + key);
+			for (int key = 0; key < 100; key += 2)
+				Assert.assertTrue(tree.delete(key));
+			List<INode<Integer, String>> nodes = new ArrayList<>();
+			Queue<INode<Integer, String>> queue = new LinkedList<>();
+			queue.add(tree.getRoot());
+			while (!queue.isEmpty()) {
+				INode<Integer, String> node = queue.poll();
+				if (node.isNull())
+					continue;
+				nodes.add(node);
+				queue.add(node.getLeftChild());
+				queue.add(node.getRightChild());
+			}
+			Assert.assertEquals(50, nodes.size());
+			for (INode<Integer, String> node : nodes) {
+				Assert.assertEquals(1, node.getKey() % 2);
+				Assert.assertEquals("soso" + node.getKey(), node.getValue());
+			}
+			Assert.assertTrue(verifyProps(tree.getRoot()));
+			INode<Integer, String> root = tree.getRoot();
+			root.setValue("toto");
+			Assert.assertEquals("toto", tree.search(root.getKey()));
+			try {
+				root.setValue(null);
+				Assert.fail();
+			} catch (RuntimeErrorException e) {
+			}
+			//relinking through the interface is seen by the lookups
+			INode<Integer, String> left = root.getLeftChild();
+			root.setLeftChild(null);
+			Assert.assertFalse(tree.contains(left.getKey()));
+			root.setLeftChild(left);
+			Assert.assertTrue(tree.contains(left.getKey()));
+			root.getRightChild().setColor(root.getRightChild().getColor());
+			Assert.assertTrue(verifyProps(tree.getRoot()));
+		} catch (Throwable e) {
+			TestRunner.fail("Fail in optimistic tree root", e);
+		}
+	}
+
 	private boolean validateBST(INode<Integer, String> node, INode<Integer, String> leftRange, INode<Integer, String> rightRange) {
 		if (node == null || node.isNull()) return true;
 
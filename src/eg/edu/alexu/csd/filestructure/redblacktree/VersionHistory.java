@@ -0,0 +1,76 @@
+package eg.edu.alexu.csd.filestructure.redblacktree;
+
+import javax.management.RuntimeErrorException;
+
+/**
+ * bounded ring of past versions of a {@link PersistentRedBlackTree}, answering reads "as of" a version.
+ * Recording a version only keeps a reference to it, and once the ring is full the oldest version is dropped.
+ * The methods synchronize on the history so a writer can record versions while readers look them up.
+ * @param <T> type of the keys.
+ * @param <V> type of the values.
+ */
+public final class VersionHistory<T extends Comparable<T>, V> {
+    private final PersistentRedBlackTree<T, V>[] versions;
+    //index of the slot the next version goes to, and how many slots are in use
+    private int next = 0;
+    private int count = 0;
+
+    /**
+     * @param capacity the number of versions kept.
+     */
+    @SuppressWarnings("unchecked")
+    public VersionHistory(int capacity) {
+        if (capacity < 1)
+            throw new RuntimeErrorException(new Error());
+        //the array never leaves the history and only ever holds versions of this type
+        versions = (PersistentRedBlackTree<T, V>[]) new PersistentRedBlackTree<?, ?>[capacity];
+    }
+
+    /**
+     * keep the given version, dropping the oldest one if the history is full.
+     * @param tree a version newer than every version recorded so far.
+     */
+    public synchronized void record(PersistentRedBlackTree<T, V> tree) {
+        if (tree == null || (count > 0 && tree.getVersion() <= latest().getVersion()))
+            throw new RuntimeErrorException(new Error());
+        versions[next] = tree;
+        next = (next + 1) % versions.length;
+        if (count < versions.length)
+            count++;
+    }
+
+    /**
+     * @return the newest recorded version, or null if nothing was recorded.
+     */
+    public synchronized PersistentRedBlackTree<T, V> latest() {
+        return count == 0 ? null : versions[(next - 1 + versions.length) % versions.length];
+    }
+
+    /**
+     * get the tree as it was at the given version.
+     * @param version the version to read.
+     * @return the newest recorded version not newer than the given one, or null if the history does not go back that far.
+     */
+    public synchronized PersistentRedBlackTree<T, V> asOf(long version) {
+        //the versions increase around the ring from the oldest slot, so binary search over the logical positions
+        int oldest = (next - count + versions.length) % versions.length;
+        int lo = 0, hi = count - 1;
+        PersistentRedBlackTree<T, V> best = null;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            PersistentRedBlackTree<T, V> tree = versions[(oldest + mid) % versions.length];
+            if (tree.getVersion() <= version) {
+                best = tree;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return the number of versions currently kept.
+     */
+    public synchronized int size() { return count; }
+}
@@ -0,0 +1,151 @@
+package eg.edu.alexu.csd.filestructure.redblacktree;
+
+import javax.management.RuntimeErrorException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * node of {@link OptimisticRedBlackTree} carrying a version number that readers validate while walking down.
+ * The version is odd while a writer is relinking the node and is bumped again once it is done, so a reader that sees
+ * the same even version before and after reading a link knows the link was not changed in between.
+ * Writers change the links, the key and the color only while holding the node's lock, and the setters of {@link INode}
+ * do the same, so a node handed out by {@link OptimisticRedBlackTree#getRoot()} can be edited like the nodes of the
+ * other trees. A deleted key keeps its node with a null value until the tree sweeps it out. The nil leaf ignores writes.
+ */
+class VersionedNode<T extends Comparable<T>, V> implements INode<T, V> {
+    private static final VersionedNode<?, ?> NIL = new VersionedNode<>(null, null);
+
+    volatile T key;
+    volatile V value;
+    volatile VersionedNode<T, V> parent;
+    volatile VersionedNode<T, V> left;
+    volatile VersionedNode<T, V> right;
+    volatile boolean color;
+    volatile long version;
+    final ReentrantLock lock = new ReentrantLock();
+
+    VersionedNode(T key, V value) {
+        this.key = key;
+        this.value = value;
+        if (key == null) {
+            this.color = BLACK;
+        } else {
+            this.color = RED;
+            this.left = nil();
+            this.right = nil();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T extends Comparable<T>, V> VersionedNode<T, V> nil() {
+        return (VersionedNode<T, V>) NIL;
+    }
+
+    boolean isDeleted() { return value == null; }
+
+    private VersionedNode<T, V> cast(INode<T, V> node) {
+        if (node == null || node.isNull())
+            return nil();
+        if (!(node instanceof VersionedNode))
+            throw new RuntimeErrorException(new Error());
+        return (VersionedNode<T, V>) node;
+    }
+
+    /**
+     * set a link the way a rotation does, under the lock and with the version odd while the link changes.
+     */
+    private void relink(boolean isRight, VersionedNode<T, V> child) {
+        if (this == NIL)
+            return;
+        lock.lock();
+        try {
+            version = version + 1;
+            if (isRight)
+                right = child;
+            else
+                left = child;
+            version = version + 1;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void setParent(INode<T, V> parent) {
+        //only kept for callers walking up, readers and writers of the tree never follow it
+        if (this != NIL)
+            this.parent = parent == null ? null : cast(parent);
+    }
+
+    @Override
+    public INode<T, V> getParent() { return parent; }
+
+    @Override
+    public void setLeftChild(INode<T, V> leftChild) { relink(false, cast(leftChild)); }
+
+    @Override
+    public INode<T, V> getLeftChild() { return left; }
+
+    @Override
+    public void setRightChild(INode<T, V> rightChild) { relink(true, cast(rightChild)); }
+
+    @Override
+    public INode<T, V> getRightChild() { return right; }
+
+    @Override
+    public T getKey() { return key; }
+
+    @Override
+    public void setKey(T key) {
+        if (this == NIL)
+            return;
+        if (key == null)
+            throw new RuntimeErrorException(new Error());
+        lock.lock();
+        try {
+            //a reader that compared against the old key notices the version moved when it leaves the node
+            version = version + 1;
+            this.key = key;
+            version = version + 1;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public V getValue() { return value; }
+
+    @Override
+    public void setValue(V value) {
+        if (this == NIL)
+            return;
+        //a null value would delete the key behind the tree's count, and a deleted key has to be inserted again
+        if (value == null)
+            throw new RuntimeErrorException(new Error());
+        lock.lock();
+        try {
+            if (isDeleted())
+                throw new RuntimeErrorException(new Error());
+            this.value = value;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean getColor() { return color; }
+
+    @Override
+    public void setColor(boolean color) {
+        if (this == NIL)
+            return;
+        lock.lock();
+        try {
+            this.color = color;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isNull() { return this == NIL; }
+}